@@ -0,0 +1,51 @@
+package com.adamhedges.financial.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class BackgroundCompactor<T extends Comparable<T>> implements AutoCloseable {
+
+    private final FileStore<T> fileStore;
+    private final double deadSpaceRatio;
+    private final ScheduledExecutorService scheduler;
+
+    public BackgroundCompactor(FileStore<T> fileStore, long intervalMillis, double deadSpaceRatio) {
+        this.fileStore = fileStore;
+        this.deadSpaceRatio = deadSpaceRatio;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "filestore-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::compactAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // compacts every loaded symbol whose dead bytes exceed the configured share of its data file
+    public void compactAll() {
+        for (String symbol : fileStore.index.keySet()) {
+            try {
+                Path datapath = Paths.get(fileStore.adapter.getDataFilePath(symbol));
+                if (!Files.exists(datapath) || Files.size(datapath) == 0) {
+                    continue;
+                }
+
+                if (fileStore.getDeadBytes(symbol) > Files.size(datapath) * deadSpaceRatio) {
+                    fileStore.compact(symbol);
+                }
+            } catch (IOException ioex) {
+                System.out.printf("Unable to compact %s data file: %s%n", symbol, ioex.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+    }
+
+}
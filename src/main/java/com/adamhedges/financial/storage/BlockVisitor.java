@@ -0,0 +1,14 @@
+package com.adamhedges.financial.storage;
+
+import com.adamhedges.financial.storage.index.IndexNode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+@FunctionalInterface
+public interface BlockVisitor {
+
+    // rows holds up to node.getCount() little-endian row-layout records from its position; it is only valid during the call
+    void visit(IndexNode node, ByteBuffer rows) throws IOException;
+
+}
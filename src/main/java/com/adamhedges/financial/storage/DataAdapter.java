@@ -1,11 +1,15 @@
 package com.adamhedges.financial.storage;
 
+import com.adamhedges.financial.storage.layout.ColumnType;
+import com.adamhedges.financial.storage.rollup.DailySummary;
 import com.adamhedges.utilities.filesystem.ResourceUtilities;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Optional;
 
 public abstract class DataAdapter<T extends Comparable<T>> {
 
@@ -13,13 +17,18 @@ public abstract class DataAdapter<T extends Comparable<T>> {
     private final String dataPath;
     private final String indexPath;
 
-    public final ByteBuffer buffer;
+    // one record buffer per thread for the per-record methods, so concurrent reads and writes never share one
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(getRecordSizeBytes()).order(ByteOrder.LITTLE_ENDIAN));
 
     public DataAdapter(String rootPath, String datapath, String indexpath) {
         this.rootPath = rootPath;
         this.dataPath = datapath;
         this.indexPath = indexpath;
-        this.buffer = ByteBuffer.allocate(getRecordSizeBytes()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // the calling thread's buffer, which toByteBuffer(T) encodes into and fromByteBuffer(String) decodes from
+    public ByteBuffer getBuffer() {
+        return buffers.get();
     }
 
     public String getDataPath() {
@@ -36,8 +45,12 @@ public abstract class DataAdapter<T extends Comparable<T>> {
     }
 
     public String getIndexFilePath(String symbol) {
+        return getIndexFilePath(symbol, "csv");
+    }
+
+    public String getIndexFilePath(String symbol, String extension) {
         String path = getIndexPath();
-        return ResourceUtilities.getResourceFilePath(path, String.format("%s.csv", symbol));
+        return ResourceUtilities.getResourceFilePath(path, String.format("%s.%s", symbol, extension));
     }
 
     public abstract int getRecordSizeBytes();
@@ -49,4 +62,64 @@ public abstract class DataAdapter<T extends Comparable<T>> {
     public abstract long getItemId(T item);
     public abstract long getItemDate(T item);
 
+    // estimated heap bytes held by numRecords decoded items, which weights day blocks in the block cache
+    // the default allows an object header and a list reference per item on top of its stored fields; adapters can be more exact
+    public long getDecodedSizeBytes(int numRecords) {
+        return getRecordSizeBytes(numRecords) + 24L * numRecords;
+    }
+
+    // summary of one day's sorted items for the daily rollup tier; adapters whose items carry prices override this
+    public Optional<DailySummary> summarize(long date, List<T> items) {
+        return Optional.empty();
+    }
+
+    // field types in record order, needed for non-row block layouts; widths must add up to getRecordSizeBytes()
+    public List<ColumnType> getColumns() {
+        return List.of();
+    }
+
+    // an independent copy of a decoded item, which reads from the block cache hand out in place of the cached one
+    // the default round-trips the item through its stored form; adapters whose items can copy themselves can override this
+    public T copy(T item, String symbol) {
+        ByteBuffer row = allocate(1);
+        toByteBuffer(item, row);
+        return fromByteBuffer(row.flip(), symbol);
+    }
+
+    public ByteBuffer allocate(int numRecords) {
+        return ByteBuffer.allocate(getRecordSizeBytes(numRecords)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // encodes at the target's position and advances it; adapters can override to skip the copy through the record buffer
+    public void toByteBuffer(T item, ByteBuffer target) {
+        ByteBuffer buffer = getBuffer();
+        toByteBuffer(item);
+        target.put(buffer.array(), 0, getRecordSizeBytes());
+    }
+
+    // decodes at the source's position and advances it; adapters can override to skip the copy through the record buffer
+    public T fromByteBuffer(ByteBuffer source, String symbol) {
+        ByteBuffer buffer = getBuffer();
+        source.get(buffer.array(), 0, getRecordSizeBytes());
+        buffer.rewind();
+        return fromByteBuffer(symbol);
+    }
+
+    public void toByteBuffer(List<T> items, ByteBuffer target) {
+        for (T item : items) {
+            toByteBuffer(item, target);
+        }
+    }
+
+    public int fromByteBuffer(ByteBuffer source, String symbol, int count, List<T> items) {
+        int n = Math.min(count, source.remaining() / getRecordSizeBytes());
+        for (int i = 0; i < n; i++) {
+            T item = fromByteBuffer(source, symbol);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return n;
+    }
+
 }
@@ -1,24 +1,111 @@
 package com.adamhedges.financial.storage;
 
+import com.adamhedges.financial.storage.cache.BlockCache;
+import com.adamhedges.financial.storage.durability.LogRecord;
+import com.adamhedges.financial.storage.durability.SyncPolicy;
+import com.adamhedges.financial.storage.durability.WriteAheadLog;
 import com.adamhedges.financial.storage.exceptions.FileStoreIntegrityException;
+import com.adamhedges.financial.storage.index.DateIndex;
 import com.adamhedges.financial.storage.index.IndexNode;
 import com.adamhedges.financial.storage.index.SymbolIndex;
+import com.adamhedges.financial.storage.integrity.IntegrityIssue;
+import com.adamhedges.financial.storage.io.FileChannelPool;
+import com.adamhedges.financial.storage.io.MappedDataFile;
+import com.adamhedges.financial.storage.layout.BlockLayout;
+import com.adamhedges.financial.storage.layout.BlockStats;
+import com.adamhedges.financial.storage.layout.ColumnType;
+import com.adamhedges.financial.storage.rollup.DailySummary;
+import com.adamhedges.financial.storage.rollup.RollupStore;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class FileStore<T extends Comparable<T>> {
+public class FileStore<T extends Comparable<T>> implements AutoCloseable {
+
+    // compaction writes the new data file next to the old one with this extension before moving it into place
+    public static final String COMPACT_EXTENSION = "compact";
+
+    private static final int INTEGRITY_CHUNK_RECORDS = 4096;
+    private static final int CURSOR_CHUNK_RECORDS = 4096;
 
     public final DataAdapter<T> adapter;
     public final SymbolIndex<T> index;
+    public final FileStoreOptions options;
+
+    private final Map<String, MappedDataFile> mappedFiles = new ConcurrentHashMap<>();
+    private final Map<String, ReadWriteLock> locks = new ConcurrentHashMap<>();
+    private final ThreadLocal<ScratchBuffers> scratch = ThreadLocal.withInitial(ScratchBuffers::new);
+    private final BlockCache<T> blockCache;
+    private final FileChannelPool channels;
+    private final RollupStore<T> rollups;
+
+    // writers hold the read lock from logging a write until it is applied, so a checkpoint never drops an unapplied record
+    private final ReadWriteLock checkpoints = new ReentrantReadWriteLock();
+    private final Set<String> unforced = ConcurrentHashMap.newKeySet();
+    private WriteAheadLog wal = null;
 
     public FileStore(DataAdapter<T> dataAdapter) {
+        this(dataAdapter, new FileStoreOptions());
+    }
+
+    public FileStore(DataAdapter<T> dataAdapter, FileStoreOptions fileStoreOptions) {
         adapter = dataAdapter;
-        index = new SymbolIndex<>(adapter);
+        options = fileStoreOptions;
+        // evicting a symbol's index takes its write lock so it is never unloaded while in use
+        index = new SymbolIndex<>(adapter, options.getIndexFormat(), options.getIndexJournalEntries(),
+                options.getMaxResidentSymbols(), symbol -> getLock(symbol).writeLock());
+        blockCache = options.getBlockCacheBytes() > 0 ? new BlockCache<>(options.getBlockCacheBytes()) : null;
+        channels = options.getMaxOpenFiles() > 0 ? new FileChannelPool(options.getMaxOpenFiles()) : null;
+        rollups = new RollupStore<>(adapter, options.getMaxResidentSymbols());
+
+        if (!options.getLayout().isFixedSize() && !options.isAppendOnly()) {
+            throw new IllegalArgumentException(String.format("The %s layout requires appendOnly", options.getLayout()));
+        }
+
+        if (options.getSyncPolicy() != SyncPolicy.NONE) {
+            Path walpath = WriteAheadLog.getPath(adapter);
+            WriteAheadLog log = null;
+            try {
+                // the log is locked before replay, so a second store on the same directory fails instead of replaying a live log
+                log = new WriteAheadLog(walpath, options.getSyncPolicy(), options.getSyncIntervalMillis());
+                recover(log);
+                wal = log;
+            } catch (IOException ioex) {
+                closeQuietly(log);
+                throw new UncheckedIOException(String.format("Unable to recover write-ahead log %s", walpath), ioex);
+            }
+        }
     }
 
     private void shiftBytes(RandomAccessFile file, long offset, int count, int deltaBytes) throws IOException {
@@ -29,12 +116,49 @@ public class FileStore<T extends Comparable<T>> {
         file.write(bytes, 0, bytes.length);
     }
 
+    private void encodeBlock(List<T> items, ByteBuffer target) {
+        if (options.getLayout() == BlockLayout.ROW) {
+            adapter.toByteBuffer(items, target);
+            return;
+        }
+
+        ByteBuffer rows = adapter.allocate(items.size());
+        adapter.toByteBuffer(items, rows);
+        rows.flip();
+        options.getLayout().fromRows(rows, items.size(), adapter.getColumns(), target);
+    }
+
+    private void decodeBlock(ByteBuffer stored, String symbol, int count, List<T> items) throws IOException {
+        if (options.getLayout() == BlockLayout.ROW) {
+            adapter.fromByteBuffer(stored, symbol, count, items);
+            return;
+        }
+
+        if (stored.remaining() < options.getLayout().storedBytes(stored, adapter.getRecordSizeBytes(count))) {
+            throw new IOException("Day block is shorter than its index count");
+        }
+
+        ByteBuffer rows = adapter.allocate(count);
+        try {
+            options.getLayout().toRows(stored, count, adapter.getColumns(), rows);
+        } catch (IndexOutOfBoundsException ex) {
+            throw new IOException("Day block is corrupt", ex);
+        }
+        rows.flip();
+        adapter.fromByteBuffer(rows, symbol, count, items);
+    }
+
+    // a buffer large enough for count records encoded in this store's layout
+    private ByteBuffer allocateBlock(int count) {
+        int nbytes = options.getLayout().maxStoredBytes(adapter.getRecordSizeBytes(count));
+        return ByteBuffer.allocate(nbytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
     private void writeBytes(RandomAccessFile file, List<T> items, long offset) throws IOException {
+        ByteBuffer block = allocateBlock(items.size());
+        encodeBlock(items, block);
         file.seek(offset);
-        for (T item : items) {
-            adapter.toByteBuffer(item);
-            file.write(adapter.buffer.array());
-        }
+        file.write(block.array(), 0, block.position());
     }
 
     private void writeNewItems(String symbol, long date, List<T> items, RandomAccessFile file) throws IOException {
@@ -53,6 +177,7 @@ public class FileStore<T extends Comparable<T>> {
                 while (shiftnode.isPresent() && newnode.isBefore(shiftnode.get())) {
                     shiftBytes(file, shiftnode.get().getOffset(), shiftnode.get().getCount(), deltabytes);
                     shiftnode.get().updateOffset(deltabytes);
+                    index.get(symbol).setDirty(shiftnode.get().getDate());
                     shiftnode = index.prev(symbol, shiftnode.get().getDate());
                 }
 
@@ -61,6 +186,7 @@ public class FileStore<T extends Comparable<T>> {
         }
 
         index.get(symbol).put(newnode.getDate(), newnode);
+        index.get(symbol).setDirty(newnode.getDate());
         writeBytes(file, items, newnode.getOffset());
     }
 
@@ -73,6 +199,7 @@ public class FileStore<T extends Comparable<T>> {
             while (shiftnode.isPresent() && shiftnode.get().isAfter(updateNode)) {
                 shiftBytes(file, shiftnode.get().getOffset(), shiftnode.get().getCount(), deltabytes);
                 shiftnode.get().updateOffset(deltabytes);
+                index.get(symbol).setDirty(shiftnode.get().getDate());
                 shiftnode = index.prev(symbol, shiftnode.get().getDate());
             }
 
@@ -85,6 +212,7 @@ public class FileStore<T extends Comparable<T>> {
             while (shiftnode.isPresent()) {
                 shiftBytes(file, shiftnode.get().getOffset(), shiftnode.get().getCount(), deltabytes);
                 shiftnode.get().updateOffset(deltabytes);
+                index.get(symbol).setDirty(shiftnode.get().getDate());
                 shiftnode = index.next(symbol, shiftnode.get().getDate());
             }
 
@@ -92,33 +220,534 @@ public class FileStore<T extends Comparable<T>> {
             file.setLength(file.getFilePointer());
         }
 
+        index.get(symbol).setDirty(updateNode.getDate());
         writeBytes(file, items, updateNode.getOffset());
     }
 
-    public void write(String symbol, long date, List<T> items) {
+    private void appendItems(String symbol, long date, Optional<IndexNode> writenode, List<T> items, RandomAccessFile file) throws IOException {
+        IndexNode node = writenode.isPresent() ? writenode.get() : new IndexNode(date, file.length(), 0);
+        int oldbytes = writenode.isPresent() ? storedBytes(file.getChannel(), node) : 0;
+        boolean istail = node.getOffset() + oldbytes == file.length();
+
+        ByteBuffer block = allocateBlock(items.size());
+        encodeBlock(items, block);
+
+        // rewrite in place when the block fits or is already at the end of the file, otherwise append and repoint
+        if (!istail && block.position() > oldbytes) {
+            node.setOffset(file.length());
+            istail = true;
+        }
+
+        node.setCount(items.size());
+        index.get(symbol).put(date, node);
+        index.get(symbol).setDirty(date);
+        file.seek(node.getOffset());
+        file.write(block.array(), 0, block.position());
+
+        if (istail) {
+            file.setLength(node.getOffset() + block.position());
+        }
+    }
+
+    // logs a day ahead of applying it so that recovery can replay it; returns the log position to commit before applying
+    private long logWrite(LogRecord.Kind kind, String symbol, long date, List<T> items) throws IOException {
+        if (wal == null) {
+            return 0;
+        }
+
+        ByteBuffer rows = adapter.allocate(items.size());
+        adapter.toByteBuffer(items, rows);
+        unforced.add(symbol);
+        return wal.append(kind, symbol, date, items.size(), rows.flip());
+    }
+
+    // logs a rewritten file tail as a redo image: the index nodes from the first rewritten date and the bytes they point at,
+    // which recovery writes back whole, so a crash part way through moving later blocks loses nothing
+    private long logTail(String symbol, SortedMap<Long, IndexNode> nodes, ByteBuffer bytes) throws IOException {
+        if (wal == null) {
+            return 0;
+        }
+
+        ByteBuffer rows = ByteBuffer.allocate(nodes.size() * IndexNode.BINARY_SIZE_BYTES + bytes.remaining()).order(ByteOrder.LITTLE_ENDIAN);
+        nodes.values().forEach(node -> node.toBinary(rows));
+        rows.put(bytes);
+        unforced.add(symbol);
+        return wal.append(LogRecord.Kind.TAIL, symbol, nodes.firstKey(), nodes.size(), rows.flip());
+    }
+
+    // waits for the log to reach the disk as the sync policy requires; called before the data file is touched,
+    // so a crash part way through applying a write always leaves a record to redo it
+    private void commitLog(long position) throws IOException {
+        if (wal != null) {
+            wal.commit(position);
+        }
+    }
+
+    // must be called without holding any lock, since a checkpoint waits for every writer to finish
+    private void checkpointIfFull() throws IOException {
+        if (wal != null && wal.getSize() >= options.getSyncCheckpointBytes()) {
+            checkpoint();
+        }
+    }
+
+    // forces every data file and index written since the last checkpoint to disk, after which the log can be emptied
+    public void checkpoint() throws IOException {
+        if (wal == null) {
+            return;
+        }
+
+        Lock lock = checkpoints.writeLock();
+        lock.lock();
+        try {
+            forceWritten();
+            wal.truncate();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void forceWritten() throws IOException {
+        for (String symbol : unforced) {
+            for (String filename : List.of(adapter.getDataFilePath(symbol), index.getIndexFilePath(symbol), index.getJournalFilePath(symbol))) {
+                Path path = Paths.get(filename);
+                if (Files.exists(path)) {
+                    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                        channel.force(true);
+                    }
+                }
+            }
+            unforced.remove(symbol);
+        }
+    }
+
+    // replays the writes logged since the last checkpoint, any of which a crash may have left partly applied
+    // a write record rewrites a whole day, a tail record rewrites the end of the file and an append record only adds
+    // what the day does not yet hold, so replaying a write that did complete is harmless
+    private void recover(WriteAheadLog log) throws IOException {
+        for (LogRecord record : log.read()) {
+            unforced.add(record.getSymbol());
+            if (record.getKind() == LogRecord.Kind.TAIL) {
+                redoTail(record);
+                continue;
+            }
+
+            List<T> items = new ArrayList<>();
+            adapter.fromByteBuffer(record.getRows(), record.getSymbol(), record.getCount(), items);
+            if (record.getKind() == LogRecord.Kind.APPEND) {
+                long last = read(record.getSymbol(), record.getDate()).stream().mapToLong(adapter::getItemId).max().orElse(Long.MIN_VALUE);
+                items.removeIf(item -> adapter.getItemId(item) <= last);
+                append(record.getSymbol(), record.getDate(), items);
+            } else {
+                writeBatch(record.getSymbol(), Collections.singletonMap(record.getDate(), items));
+            }
+        }
+        forceWritten();
+        log.truncate();
+    }
+
+    // writes a logged tail image back over whatever the crash left and points the index at it
+    private void redoTail(LogRecord record) throws IOException {
+        String symbol = record.getSymbol();
+        ByteBuffer rows = record.getRows();
+        List<IndexNode> nodes = new ArrayList<>(record.getCount());
+        for (int i = 0; i < record.getCount(); i++) {
+            nodes.add(IndexNode.fromBinary(rows, rows.position() + i * IndexNode.BINARY_SIZE_BYTES));
+        }
+        rows.position(rows.position() + record.getCount() * IndexNode.BINARY_SIZE_BYTES);
+
+        long tailoffset = nodes.get(0).getOffset();
+        try (RandomAccessFile file = new RandomAccessFile(adapter.getDataFilePath(symbol), "rw")) {
+            file.seek(tailoffset);
+            file.write(rows.array(), rows.arrayOffset() + rows.position(), rows.remaining());
+            file.setLength(tailoffset + rows.remaining());
+        }
+
         index.load(symbol);
-        Optional<IndexNode> writenode = index.lookup(symbol, date);
+        DateIndex dateIndex = index.get(symbol);
+        // the index may be older or newer than the record, so its tail is replaced and rewritten whole
+        dateIndex.tailMap(record.getDate()).clear();
+        nodes.forEach(node -> dateIndex.put(node.getDate(), node));
+        dateIndex.setDirty();
+        index.persist(symbol);
+
+        // the record does not say which of its days changed, so every one is summarized again
+        if (options.isDailyRollup()) {
+            TreeMap<Long, Optional<DailySummary>> changes = new TreeMap<>();
+            for (IndexNode node : nodes) {
+                changes.put(node.getDate(), adapter.summarize(node.getDate(), read(symbol, node.getDate())));
+            }
+            rollups.update(symbol, changes);
+        }
+    }
 
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (Exception ignored) { }
+    }
+
+    // checkpoints and releases the write-ahead log and closes pooled channels; the store must not be used afterwards
+    @Override
+    public void close() throws IOException {
+        try {
+            checkpoint();
+        } finally {
+            if (wal != null) {
+                wal.close();
+                wal = null;
+            }
+            if (channels != null) {
+                channels.close();
+            }
+        }
+    }
+
+    public Optional<WriteAheadLog> getWriteAheadLog() {
+        return Optional.ofNullable(wal);
+    }
+
+    public ReadWriteLock getLock(String symbol) {
+        return locks.computeIfAbsent(symbol, s -> new ReentrantReadWriteLock());
+    }
+
+    public void write(String symbol, long date, List<T> items) {
         // sort the items
         Collections.sort(items);
 
+        Lock checkpointLock = checkpoints.readLock();
+        checkpointLock.lock();
+        Lock lock = getLock(symbol).writeLock();
+        lock.lock();
+        try {
+            if (wal != null && !options.isAppendOnly()) {
+                // a logged write that moves later blocks goes through the batch path, which logs the rewritten tail
+                try {
+                    writeBatchLocked(symbol, new TreeMap<>(Collections.singletonMap(date, items)));
+                } catch (IOException ioex) {
+                    System.out.printf("Unable to write %s data file: %s%n", symbol, ioex.getMessage());
+                }
+            } else {
+                writeLocked(symbol, date, items);
+            }
+        } finally {
+            lock.unlock();
+            checkpointLock.unlock();
+        }
+
+        try {
+            checkpointIfFull();
+        } catch (IOException ioex) {
+            System.out.printf("Unable to checkpoint after %s write: %s%n", symbol, ioex.getMessage());
+        }
+    }
+
+    // the body of write for unlogged and append-only stores; called with the checkpoint read lock and the symbol's write lock held
+    private void writeLocked(String symbol, long date, List<T> items) {
+        index.load(symbol);
+        Optional<IndexNode> writenode = index.lookup(symbol, date);
+
         // open or create symbol data file
         String filename = adapter.getDataFilePath(symbol);
         try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
 
-            if (writenode.isEmpty()) {
+            commitLog(logWrite(LogRecord.Kind.WRITE, symbol, date, items));
+
+            if (options.isAppendOnly()) {
+                appendItems(symbol, date, writenode, items, file);
+            } else if (writenode.isEmpty()) {
                 writeNewItems(symbol, date, items, file);
             } else {
                 writeExistingItems(symbol, writenode.get(), items, file);
             }
 
-            index.get(symbol).setDirty();
+            updateRollup(symbol, Collections.singletonMap(date, items));
 
         } catch (IOException ioex) {
             System.out.printf("Unable to write %s data file: %s%n", symbol, ioex.getMessage());
+            invalidateCache(symbol);
+        }
+
+        // blocks moved by shiftBytes keep their dates and contents, so only the written day is stale
+        invalidateCache(symbol, date);
+        index.persist(symbol);
+    }
+
+    // writes several days at once with at most one rewrite of the file tail and one index persist
+    public void writeBatch(String symbol, Map<Long, List<T>> days) throws IOException {
+        if (days.isEmpty()) {
+            return;
+        }
+
+        // sort the days and the items within each day
+        TreeMap<Long, List<T>> batch = new TreeMap<>(days);
+        batch.values().forEach(Collections::sort);
+
+        Lock checkpointLock = checkpoints.readLock();
+        checkpointLock.lock();
+        Lock lock = getLock(symbol).writeLock();
+        lock.lock();
+        try {
+            writeBatchLocked(symbol, batch);
+        } finally {
+            lock.unlock();
+            checkpointLock.unlock();
+        }
+
+        checkpointIfFull();
+    }
+
+    // the body of writeBatch; called with the checkpoint read lock and the symbol's write lock held
+    private void writeBatchLocked(String symbol, TreeMap<Long, List<T>> batch) throws IOException {
+        index.load(symbol);
+
+        String filename = adapter.getDataFilePath(symbol);
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+            if (options.isAppendOnly()) {
+                long logged = 0;
+                for (Map.Entry<Long, List<T>> day : batch.entrySet()) {
+                    logged = logWrite(LogRecord.Kind.WRITE, symbol, day.getKey(), day.getValue());
+                }
+                commitLog(logged);
+                appendBatch(symbol, batch, file);
+            } else {
+                // logs the rewritten tail itself, since replaying the days alone cannot repair a half-shifted tail
+                writeBatchInPlace(symbol, batch, file);
+            }
+
+            updateRollup(symbol, batch);
+        } catch (IOException ioex) {
+            invalidateCache(symbol);
+            throw ioex;
+        } finally {
+            batch.keySet().forEach(date -> invalidateCache(symbol, date));
+            index.persist(symbol);
+        }
+    }
+
+    private void writeBatchInPlace(String symbol, TreeMap<Long, List<T>> batch, RandomAccessFile file) throws IOException {
+        DateIndex dateIndex = index.get(symbol);
+
+        // everything from the first batch date onwards is rewritten in one pass
+        Map.Entry<Long, IndexNode> before = dateIndex.lowerEntry(batch.firstKey());
+        long tailoffset = before == null ? 0 : before.getValue().getOffset() + adapter.getRecordSizeBytes(before.getValue().getCount());
+        SortedMap<Long, IndexNode> tail = dateIndex.tailMap(batch.firstKey());
+
+        long tailend = tailoffset;
+        long outputbytes = 0;
+        TreeSet<Long> dates = new TreeSet<>(tail.keySet());
+        dates.addAll(batch.keySet());
+        for (long date : dates) {
+            IndexNode node = tail.get(date);
+            if (node != null) {
+                tailend = Math.max(tailend, node.getOffset() + adapter.getRecordSizeBytes(node.getCount()));
+            }
+            outputbytes += batch.containsKey(date) ? adapter.getRecordSizeBytes(batch.get(date).size()) : adapter.getRecordSizeBytes(node.getCount());
+        }
+
+        if (outputbytes > Integer.MAX_VALUE || tailend - tailoffset > Integer.MAX_VALUE) {
+            throw new IOException("Batch rewrite exceeds the maximum buffer size");
+        }
+
+        byte[] tailbytes = new byte[(int) (tailend - tailoffset)];
+        file.seek(tailoffset);
+        if (readBytes(file, tailbytes, tailbytes.length) < tailbytes.length) {
+            throw new IOException("Index extends past the end of the file");
+        }
+
+        // merge existing and batch blocks in date order
+        ByteBuffer output = ByteBuffer.allocate((int) outputbytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (long date : dates) {
+            IndexNode node = tail.get(date);
+            if (batch.containsKey(date)) {
+                if (node == null) {
+                    node = new IndexNode(date, 0, 0);
+                    dateIndex.put(date, node);
+                }
+                node.setCount(batch.get(date).size());
+                node.setOffset(tailoffset + output.position());
+                encodeBlock(batch.get(date), output);
+            } else {
+                long offset = tailoffset + output.position();
+                if (node.getCount() > 0) {
+                    output.put(tailbytes, (int) (node.getOffset() - tailoffset), adapter.getRecordSizeBytes(node.getCount()));
+                }
+                node.setOffset(offset);
+            }
+            dateIndex.setDirty(date);
+        }
+
+        commitLog(logTail(symbol, dateIndex.tailMap(batch.firstKey()), ByteBuffer.wrap(output.array(), 0, output.position())));
+
+        file.seek(tailoffset);
+        file.write(output.array(), 0, output.position());
+        file.setLength(tailoffset + output.position());
+    }
+
+    private void appendBatch(String symbol, TreeMap<Long, List<T>> batch, RandomAccessFile file) throws IOException {
+        DateIndex dateIndex = index.get(symbol);
+
+        int nbytes = batch.values().stream().mapToInt(items -> allocateBlock(items.size()).capacity()).sum();
+        ByteBuffer output = ByteBuffer.allocate(nbytes).order(ByteOrder.LITTLE_ENDIAN);
+        long offset = file.length();
+
+        for (Map.Entry<Long, List<T>> day : batch.entrySet()) {
+            IndexNode node = dateIndex.computeIfAbsent(day.getKey(), date -> new IndexNode(date, 0, 0));
+            node.setOffset(offset + output.position());
+            node.setCount(day.getValue().size());
+            encodeBlock(day.getValue(), output);
+            dateIndex.setDirty(day.getKey());
+        }
+
+        file.seek(offset);
+        file.write(output.array(), 0, output.position());
+    }
+
+    // adds items to the end of a day, e.g. bars as they are captured during the session
+    // when the day's ROW block is last in the file and the items all follow it, they are written after it and only its count changes;
+    // anything else rewrites the whole day; a write-ahead log records only the appended items
+    public void append(String symbol, long date, List<T> items) throws IOException {
+        if (items.isEmpty()) {
+            return;
+        }
+        Collections.sort(items);
+
+        Lock checkpointLock = checkpoints.readLock();
+        checkpointLock.lock();
+        Lock lock = getLock(symbol).writeLock();
+        lock.lock();
+        try {
+            appendLocked(symbol, date, items);
+        } finally {
+            lock.unlock();
+            checkpointLock.unlock();
+        }
+
+        checkpointIfFull();
+    }
+
+    // the body of append; called with the checkpoint read lock and the symbol's write lock held
+    private void appendLocked(String symbol, long date, List<T> items) throws IOException {
+        index.load(symbol);
+        Optional<IndexNode> appendnode = index.lookup(symbol, date);
+        if (appendnode.isEmpty()) {
+            writeBatchLocked(symbol, new TreeMap<>(Collections.singletonMap(date, items)));
+            return;
+        }
+
+        IndexNode node = appendnode.get();
+        String filename = adapter.getDataFilePath(symbol);
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+
+            long end = node.getOffset() + adapter.getRecordSizeBytes(node.getCount());
+            if (options.getLayout() != BlockLayout.ROW || end != file.length() || !follows(symbol, end, items, file)) {
+                List<T> merged = new ArrayList<>(read(symbol, date));
+                merged.addAll(items);
+                Collections.sort(merged);
+                writeBatchLocked(symbol, new TreeMap<>(Collections.singletonMap(date, merged)));
+                return;
+            }
+
+            commitLog(logWrite(LogRecord.Kind.APPEND, symbol, date, items));
+
+            ByteBuffer block = adapter.allocate(items.size());
+            adapter.toByteBuffer(items, block);
+            file.seek(end);
+            file.write(block.array(), 0, block.position());
+
+            node.setCount(node.getCount() + items.size());
+            index.get(symbol).setDirty(date);
+            appendRollup(symbol, date, items);
+
+        } catch (IOException ioex) {
+            invalidateCache(symbol);
+            throw ioex;
+        } finally {
+            invalidateCache(symbol, date);
+            index.persist(symbol);
+        }
+    }
+
+    // true when the items all come after the record that ends at end
+    private boolean follows(String symbol, long end, List<T> items, RandomAccessFile file) throws IOException {
+        ByteBuffer last = adapter.allocate(1);
+        file.seek(end - adapter.getRecordSizeBytes());
+        last.limit(readBytes(file, last.array(), adapter.getRecordSizeBytes()));
+        if (last.remaining() < adapter.getRecordSizeBytes()) {
+            return false;
+        }
+        return adapter.getItemId(items.get(0)) > adapter.getItemId(adapter.fromByteBuffer(last, symbol));
+    }
+
+    // folds the appended items into the day's existing summary
+    private void appendRollup(String symbol, long date, List<T> items) throws IOException {
+        if (!options.isDailyRollup()) {
+            return;
+        }
+
+        Optional<DailySummary> added = summarizeStored(symbol, date, items);
+        DailySummary existing = rollups.load(symbol).get(date);
+        TreeMap<Long, Optional<DailySummary>> changes = new TreeMap<>();
+        changes.put(date, existing == null || added.isEmpty() ? added : DailySummary.combine(List.of(existing, added.get())));
+        rollups.update(symbol, changes);
+    }
+
+    // summarizes the written days into the rollup tier; called with the symbol's write lock held
+    private void updateRollup(String symbol, Map<Long, List<T>> days) throws IOException {
+        if (!options.isDailyRollup()) {
+            return;
+        }
+
+        TreeMap<Long, Optional<DailySummary>> changes = new TreeMap<>();
+        for (Map.Entry<Long, List<T>> day : days.entrySet()) {
+            changes.put(day.getKey(), summarizeStored(symbol, day.getKey(), day.getValue()));
+        }
+        rollups.update(symbol, changes);
+    }
+
+    // summarizes the items as the adapter stores them, so that write-time summaries agree with rebuildRollup
+    private Optional<DailySummary> summarizeStored(String symbol, long date, List<T> items) {
+        ByteBuffer rows = adapter.allocate(items.size());
+        adapter.toByteBuffer(items, rows);
+        List<T> stored = new ArrayList<>(items.size());
+        adapter.fromByteBuffer(rows.flip(), symbol, items.size(), stored);
+        return adapter.summarize(date, stored);
+    }
+
+    // daily summaries in the range from the rollup tier, without reading the data file
+    public List<DailySummary> readRollup(String symbol, long fromDate, long throughDate) {
+        Lock lock = getLock(symbol).readLock();
+        lock.lock();
+        try {
+            return rollups.read(symbol, fromDate, throughDate);
+        } finally {
+            lock.unlock();
         }
+    }
+
+    // recomputes the symbol's rollup from its data file, e.g. for data written before the rollup was enabled
+    public void rebuildRollup(String symbol) throws IOException {
+        Lock lock = getLock(symbol).writeLock();
+        lock.lock();
+        try {
+            index.load(symbol);
 
-        index.persist();
+            TreeMap<Long, DailySummary> days = new TreeMap<>();
+            Optional<IndexNode> first = index.first(symbol);
+            if (first.isPresent()) {
+                List<T> items = new ArrayList<>();
+                visit(symbol, first.get().getDate(), Long.MAX_VALUE, (node, rows) -> {
+                    items.clear();
+                    adapter.fromByteBuffer(rows, symbol, node.getCount(), items);
+                    adapter.summarize(node.getDate(), items).ifPresent(summary -> days.put(node.getDate(), summary));
+                });
+            }
+
+            rollups.reset(symbol, days);
+        } finally {
+            lock.unlock();
+        }
     }
 
     public List<T> read(String symbol, long date) {
@@ -126,79 +755,901 @@ public class FileStore<T extends Comparable<T>> {
     }
 
     public List<T> read(String symbol, long fromDate, long throughDate) {
-        index.load(symbol);
         List<T> items = new ArrayList<>();
 
-        Optional<IndexNode> datenode = index.lookup(symbol, fromDate);
-        if (datenode.isEmpty()) {
-            return items;
+        try {
+            if (blockCache == null) {
+                visit(symbol, fromDate, throughDate, (node, rows) -> adapter.fromByteBuffer(rows, symbol, node.getCount(), items));
+            } else {
+                readCached(symbol, fromDate, throughDate, items);
+            }
+        } catch (IOException ex) {
+            System.out.printf("Unable to open %s data file: %s%n", symbol, ex.getMessage());
         }
 
-        String filename = adapter.getDataFilePath(symbol);
-        try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
-            while (datenode.get().getDate() <= throughDate) {
-                file.seek(datenode.get().getOffset());
-                for (int i = 0; i < datenode.get().getCount(); i++) {
-                    T item = adapter.read(file, symbol);
-                    if (item != null) {
-                        items.add(item);
+        return items;
+    }
+
+    // records with times in [fromTime, toTime) on each day of the range; each day's span is found by binary search and only it is decoded
+    // the adapter must implement ItemTimeSource
+    @SuppressWarnings("unchecked")
+    public List<T> read(String symbol, long fromDate, long throughDate, long fromTime, long toTime) {
+        if (!(adapter instanceof ItemTimeSource<?>)) {
+            throw new IllegalArgumentException("Data adapter does not implement ItemTimeSource");
+        }
+        ItemTimeSource<T> times = (ItemTimeSource<T>) adapter;
+        List<T> items = new ArrayList<>();
+
+        Lock lock = getLock(symbol).readLock();
+        lock.lock();
+        try {
+            Optional<IndexNode> datenode = index.lookup(symbol, fromDate);
+            if (datenode.isEmpty()) {
+                return items;
+            }
+
+            Optional<ByteBuffer> mapping = options.isMappedReads() ? getMappedFile(symbol).map() : Optional.empty();
+            try (FileChannelPool.Handle file = mapping.isPresent() ? null : openForRead(symbol)) {
+                while (datenode.isPresent() && datenode.get().getDate() <= throughDate) {
+                    IndexNode node = datenode.get();
+
+                    // row blocks are probed on disk a record at a time, other layouts are searched once the day is decoded to rows
+                    ByteBuffer day = options.getLayout() == BlockLayout.ROW ? null : readRows(node, 0, node.getCount(), mapping, file);
+                    int first = searchTime(symbol, node, times, fromTime, day, mapping, file);
+                    int last = searchTime(symbol, node, times, toTime, day, mapping, file);
+
+                    if (last > first) {
+                        ByteBuffer rows = day == null ? readRows(node, first, last - first, mapping, file)
+                                : day.position(day.position() + adapter.getRecordSizeBytes(first));
+                        adapter.fromByteBuffer(rows, symbol, last - first, items);
                     }
+
+                    datenode = index.next(symbol, node.getDate());
                 }
+            }
+        } catch (IOException ex) {
+            System.out.printf("Unable to open %s data file: %s%n", symbol, ex.getMessage());
+        } finally {
+            lock.unlock();
+        }
 
-                datenode = index.next(symbol, datenode.get().getDate());
+        return items;
+    }
+
+    // index of the first record in the day with a time at or after time
+    private int searchTime(String symbol, IndexNode node, ItemTimeSource<T> times, long time, ByteBuffer day, Optional<ByteBuffer> mapping, FileChannelPool.Handle file) throws IOException {
+        int low = 0;
+        int high = node.getCount();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            ByteBuffer row;
+            if (day == null) {
+                row = readRows(node, mid, 1, mapping, file);
+            } else {
+                row = day.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                row.position(row.position() + adapter.getRecordSizeBytes(mid));
+            }
+
+            if (row.remaining() < adapter.getRecordSizeBytes()) {
+                throw new IOException(String.format("Index node for date %s extends past the end of the file", node.getDate()));
+            }
+
+            if (times.getItemTime(adapter.fromByteBuffer(row, symbol)) < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // like visit, but serves whole days from the block cache and only opens the data file on a miss
+    private void readCached(String symbol, long fromDate, long throughDate, List<T> items) throws IOException {
+        Lock lock = getLock(symbol).readLock();
+        lock.lock();
+        FileChannelPool.Handle file = null;
+        try {
+            Optional<IndexNode> datenode = index.lookup(symbol, fromDate);
+
+            Optional<ByteBuffer> mapping = Optional.empty();
+            while (datenode.isPresent() && datenode.get().getDate() <= throughDate) {
+                IndexNode node = datenode.get();
+                List<T> block = blockCache.get(symbol, node);
+                if (block == null) {
+                    if (mapping.isEmpty() && file == null) {
+                        mapping = options.isMappedReads() ? getMappedFile(symbol).map() : Optional.empty();
+                        file = mapping.isPresent() ? null : openForRead(symbol);
+                    }
+
+                    block = new ArrayList<>(node.getCount());
+                    ByteBuffer stored = mapping.isPresent() ? readBlock(mapping.get(), node) : readBlock(file, node);
+                    int decoded = adapter.fromByteBuffer(toRows(stored, node), symbol, node.getCount(), block);
+
+                    // a short block means the file is shorter than the index, so keep it out of the cache
+                    if (decoded == node.getCount()) {
+                        blockCache.put(symbol, node, block, adapter.getDecodedSizeBytes(node.getCount()));
+                    }
+                }
+
+                // the cached items stay private to the cache, so callers may modify what they are given
+                for (T item : block) {
+                    items.add(adapter.copy(item, symbol));
+                }
+                datenode = index.next(symbol, node.getDate());
+            }
+        } finally {
+            if (file != null) {
+                file.close();
+            }
+            lock.unlock();
+        }
+    }
+
+    public Optional<BlockCache<T>> getBlockCache() {
+        return Optional.ofNullable(blockCache);
+    }
+
+    private void invalidateCache(String symbol, long date) {
+        if (blockCache != null) {
+            blockCache.invalidate(symbol, date);
+        }
+    }
+
+    private void invalidateCache(String symbol) {
+        if (blockCache != null) {
+            blockCache.invalidate(symbol);
+        }
+    }
+
+    public FileStoreCursor<T> cursor(String symbol, long fromDate, long throughDate) {
+        return cursor(symbol, fromDate, throughDate, CURSOR_CHUNK_RECORDS);
+    }
+
+    // like read, the range only starts if fromDate is in the index
+    public FileStoreCursor<T> cursor(String symbol, long fromDate, long throughDate, int chunkRecords) {
+        Lock lock = getLock(symbol).readLock();
+        lock.lock();
+        try {
+            boolean exhausted = index.lookup(symbol, fromDate).isEmpty() || fromDate > throughDate;
+            return new FileStoreCursor<>(this, symbol, fromDate, throughDate, Math.max(chunkRecords, 1), exhausted);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the stream holds a file handle until it is exhausted or closed
+    public Stream<T> stream(String symbol, long fromDate, long throughDate) {
+        FileStoreCursor<T> cursor = cursor(symbol, fromDate, throughDate);
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(cursor::close);
+    }
+
+    // decodes the cursor's next chunk; day blocks in non-row layouts are decoded whole
+    void fill(FileStoreCursor<T> cursor) throws IOException {
+        Lock lock = getLock(cursor.symbol).readLock();
+        lock.lock();
+        try {
+            // continue in the current day, or move on if it is done or was removed in the meantime
+            Optional<IndexNode> datenode = index.lookup(cursor.symbol, cursor.date);
+            while (datenode.isEmpty() || cursor.position >= datenode.get().getCount()) {
+                datenode = index.next(cursor.symbol, cursor.date);
+                cursor.position = 0;
                 if (datenode.isEmpty()) {
                     break;
                 }
+                cursor.date = datenode.get().getDate();
             }
-        } catch (IOException ex) {
-            System.out.printf("Unable to open %s data file: %s%n", symbol, ex.getMessage());
+
+            if (datenode.isEmpty() || datenode.get().getDate() > cursor.throughDate) {
+                cursor.exhausted = true;
+                return;
+            }
+
+            IndexNode node = datenode.get();
+            Optional<ByteBuffer> mapping = options.isMappedReads() ? getMappedFile(cursor.symbol).map() : Optional.empty();
+            if (mapping.isEmpty()) {
+                openCursorFile(cursor);
+            }
+
+            int n = node.getCount() - cursor.position;
+            if (options.getLayout() == BlockLayout.ROW) {
+                n = Math.min(cursor.chunkRecords, n);
+            }
+
+            ByteBuffer rows = readRows(node, cursor.position, n, mapping, cursor.file);
+            int decoded = adapter.fromByteBuffer(rows, cursor.symbol, n, cursor.chunk);
+
+            // a short block means the file is shorter than the index, so give up on the rest of the day
+            cursor.position = decoded < n ? node.getCount() : cursor.position + n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void openCursorFile(FileStoreCursor<T> cursor) throws IOException {
+        Path datapath = Paths.get(adapter.getDataFilePath(cursor.symbol));
+        Object fileKey = Files.readAttributes(datapath, BasicFileAttributes.class).fileKey();
+
+        // reopen if compaction replaced the file since the last chunk
+        if (cursor.file != null && !Objects.equals(fileKey, cursor.fileKey)) {
+            cursor.file.close();
+            cursor.file = null;
+        }
+
+        if (cursor.file == null) {
+            cursor.file = openForRead(cursor.symbol);
+            cursor.fileKey = fileKey;
+        }
+    }
+
+    // the last numRecords records dated on or before throughDate, walking back across as many days as needed
+    public List<T> readTail(String symbol, long throughDate, int numRecords) throws IOException {
+        List<T> items = new ArrayList<>();
+
+        Lock lock = getLock(symbol).readLock();
+        lock.lock();
+        try {
+            Deque<IndexNode> nodes = new ArrayDeque<>();
+            int total = 0;
+            Optional<IndexNode> datenode = index.lookup(symbol, throughDate).or(() -> index.prev(symbol, throughDate));
+            while (datenode.isPresent() && total < numRecords) {
+                nodes.addFirst(datenode.get());
+                total += datenode.get().getCount();
+                datenode = index.prev(symbol, datenode.get().getDate());
+            }
+
+            if (nodes.isEmpty() || numRecords <= 0) {
+                return items;
+            }
+
+            Optional<ByteBuffer> mapping = options.isMappedReads() ? getMappedFile(symbol).map() : Optional.empty();
+            try (FileChannelPool.Handle file = mapping.isPresent() ? null : openForRead(symbol)) {
+                // only the earliest day is partial
+                int skip = Math.max(total - numRecords, 0);
+                for (IndexNode node : nodes) {
+                    int n = node.getCount() - skip;
+                    adapter.fromByteBuffer(readRows(node, skip, n, mapping, file), symbol, n, items);
+                    skip = 0;
+                }
+            }
+        } finally {
+            lock.unlock();
         }
 
         return items;
     }
 
+    // hands each day block in the range to the visitor as row-layout records, reusing this thread's buffers
+    public void visit(String symbol, long fromDate, long throughDate, BlockVisitor visitor) throws IOException {
+        Lock lock = getLock(symbol).readLock();
+        lock.lock();
+        try {
+            Optional<IndexNode> datenode = index.lookup(symbol, fromDate);
+            if (datenode.isEmpty()) {
+                return;
+            }
+
+            Optional<ByteBuffer> mapping = options.isMappedReads() ? getMappedFile(symbol).map() : Optional.empty();
+            try (FileChannelPool.Handle file = mapping.isPresent() ? null : openForRead(symbol)) {
+                while (datenode.isPresent() && datenode.get().getDate() <= throughDate) {
+                    IndexNode node = datenode.get();
+                    ByteBuffer stored = mapping.isPresent() ? readBlock(mapping.get(), node) : readBlock(file, node);
+                    visitor.visit(node, toRows(stored, node));
+                    datenode = index.next(symbol, node.getDate());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // row-layout records [from, from + n) of a day block; row stores read only that span
+    private ByteBuffer readRows(IndexNode node, int from, int n, Optional<ByteBuffer> mapping, FileChannelPool.Handle file) throws IOException {
+        if (options.getLayout() == BlockLayout.ROW) {
+            IndexNode span = new IndexNode(node.getDate(), node.getOffset() + adapter.getRecordSizeBytes(from), n);
+            return mapping.isPresent() ? readBlock(mapping.get(), span) : readBlock(file, span);
+        }
+
+        ByteBuffer stored = mapping.isPresent() ? readBlock(mapping.get(), node) : readBlock(file, node);
+        ByteBuffer rows = toRows(stored, node);
+        rows.position(rows.position() + adapter.getRecordSizeBytes(from));
+        rows.limit(rows.position() + adapter.getRecordSizeBytes(n));
+        return rows;
+    }
+
+    private ByteBuffer readBlock(ByteBuffer data, IndexNode node) throws IOException {
+        int nbytes = storedBytes(data, node);
+        if (node.getOffset() + nbytes > data.capacity()) {
+            throw new IOException(String.format("Index node for date %s extends past the end of the file", node.getDate()));
+        }
+
+        data.limit(data.capacity()).position((int) node.getOffset());
+        data.limit((int) node.getOffset() + nbytes);
+        return data;
+    }
+
+    private ByteBuffer readBlock(FileChannelPool.Handle file, IndexNode node) throws IOException {
+        int nbytes = storedBytes(file.getChannel(), node);
+        ByteBuffer block = scratch.get().stored(nbytes);
+        block.limit(readBytes(file, block.array(), 0, nbytes, node.getOffset()));
+        return block;
+    }
+
+    private ByteBuffer toRows(ByteBuffer stored, IndexNode node) throws IOException {
+        if (options.getLayout() == BlockLayout.ROW) {
+            return stored;
+        }
+
+        if (stored.remaining() < options.getLayout().storedBytes(stored, adapter.getRecordSizeBytes(node.getCount()))) {
+            throw new IOException(String.format("Day block for date %s is shorter than its index count", node.getDate()));
+        }
+
+        ByteBuffer rows = scratch.get().rows(adapter.getRecordSizeBytes(node.getCount()));
+        try {
+            options.getLayout().toRows(stored, node.getCount(), adapter.getColumns(), rows);
+        } catch (IndexOutOfBoundsException ex) {
+            throw new IOException(String.format("Day block for date %s is corrupt", node.getDate()), ex);
+        }
+        rows.flip();
+        return rows;
+    }
+
+    // bytes the node's block occupies on disk; variable-size layouts keep this in a header at the start of the block
+    private int storedBytes(FileChannel channel, IndexNode node) throws IOException {
+        BlockLayout layout = options.getLayout();
+        if (layout.isFixedSize()) {
+            return adapter.getRecordSizeBytes(node.getCount());
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(layout.getHeaderBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, node.getOffset() + header.position()) >= 0) { }
+        return checkStoredBytes(node, layout.storedBytes(header.flip(), adapter.getRecordSizeBytes(node.getCount())));
+    }
+
+    private int storedBytes(ByteBuffer data, IndexNode node) throws IOException {
+        BlockLayout layout = options.getLayout();
+        if (layout.isFixedSize()) {
+            return adapter.getRecordSizeBytes(node.getCount());
+        }
+
+        if (node.getOffset() > data.capacity()) {
+            throw new IOException(String.format("Index node for date %s extends past the end of the file", node.getDate()));
+        }
+
+        ByteBuffer header = data.duplicate().order(ByteOrder.LITTLE_ENDIAN).clear().position((int) node.getOffset());
+        return checkStoredBytes(node, layout.storedBytes(header, adapter.getRecordSizeBytes(node.getCount())));
+    }
+
+    private int checkStoredBytes(IndexNode node, int nbytes) throws IOException {
+        int maxbytes = options.getLayout().maxStoredBytes(adapter.getRecordSizeBytes(node.getCount()));
+        if (nbytes < options.getLayout().getHeaderBytes() || nbytes > maxbytes) {
+            throw new IOException(String.format("Day block header for date %s is corrupt or past the end of the file", node.getDate()));
+        }
+        return nbytes;
+    }
+
+    // reads one column of every record in the range into a little-endian buffer; COLUMNAR stores read only that column's bytes
+    public ByteBuffer readColumn(String symbol, long fromDate, long throughDate, int column) throws IOException {
+        List<ColumnType> columns = adapter.getColumns();
+        int width = columns.get(column).getSizeBytes();
+        int offset = ColumnType.offsetOf(columns, column);
+        int recordsize = adapter.getRecordSizeBytes();
+
+        Lock lock = getLock(symbol).readLock();
+        lock.lock();
+        try {
+            long count = 0;
+            List<IndexNode> nodes = new ArrayList<>();
+            Optional<IndexNode> datenode = index.lookup(symbol, fromDate);
+            while (datenode.isPresent() && datenode.get().getDate() <= throughDate) {
+                nodes.add(datenode.get());
+                count += datenode.get().getCount();
+                datenode = index.next(symbol, datenode.get().getDate());
+            }
+
+            ByteBuffer values = ByteBuffer.allocate(Math.toIntExact(count * width)).order(ByteOrder.LITTLE_ENDIAN);
+            if (nodes.isEmpty()) {
+                return values;
+            }
+
+            try (FileChannelPool.Handle file = openForRead(symbol)) {
+                for (IndexNode node : nodes) {
+                    int nbytes = node.getCount() * width;
+                    if (options.getLayout() == BlockLayout.COLUMNAR) {
+                        long position = node.getOffset() + (long) node.getCount() * offset;
+                        if (readBytes(file, values.array(), values.position(), nbytes, position) < nbytes) {
+                            throw new IOException(String.format("Index node for date %s extends past the end of the file", node.getDate()));
+                        }
+                        values.position(values.position() + nbytes);
+                    } else {
+                        // other layouts interleave the column with the others, so read the block as rows and gather it
+                        ByteBuffer rows = toRows(readBlock(file, node), node);
+                        if (rows.remaining() < adapter.getRecordSizeBytes(node.getCount())) {
+                            throw new IOException(String.format("Index node for date %s extends past the end of the file", node.getDate()));
+                        }
+                        for (int r = 0; r < node.getCount(); r++) {
+                            values.put(rows.array(), rows.position() + r * recordsize + offset, width);
+                        }
+                    }
+                }
+            }
+
+            values.flip();
+            return values;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int readBytes(RandomAccessFile file, byte[] bytes, int length) throws IOException {
+        return readBytes(file, bytes, 0, length);
+    }
+
+    private static int readBytes(RandomAccessFile file, byte[] bytes, int offset, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int nread = file.read(bytes, offset + total, length - total);
+            if (nread < 0) {
+                break;
+            }
+            total += nread;
+        }
+        return total;
+    }
+
+    // positional read, so a pooled channel can be shared by concurrent readers
+    private static int readBytes(FileChannelPool.Handle file, byte[] bytes, int offset, int length, long position) throws IOException {
+        ByteBuffer target = ByteBuffer.wrap(bytes, offset, length);
+        while (target.hasRemaining()) {
+            int nread = file.getChannel().read(target, position + target.position() - offset);
+            if (nread < 0) {
+                break;
+            }
+        }
+        return target.position() - offset;
+    }
+
+    // a read-only channel on the symbol's data file, leased from the pool when one is configured
+    private FileChannelPool.Handle openForRead(String symbol) throws IOException {
+        Path datapath = Paths.get(adapter.getDataFilePath(symbol));
+        return channels == null ? FileChannelPool.open(datapath) : channels.acquire(datapath);
+    }
+
+    private MappedDataFile getMappedFile(String symbol) {
+        return mappedFiles.computeIfAbsent(symbol, s -> new MappedDataFile(adapter.getDataFilePath(s)));
+    }
+
+    public long getDeadBytes(String symbol) throws IOException {
+        Lock lock = getLock(symbol).readLock();
+        lock.lock();
+        try {
+            index.load(symbol);
+            Path datapath = Paths.get(adapter.getDataFilePath(symbol));
+            if (!Files.exists(datapath)) {
+                return 0;
+            }
+
+            long livebytes = 0;
+            try (FileChannelPool.Handle file = openForRead(symbol)) {
+                for (IndexNode node : index.get(symbol).values()) {
+                    livebytes += storedBytes(file.getChannel(), node);
+                }
+            }
+
+            return Files.size(datapath) - livebytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // reads and decodes every live block of the symbol to report its compression ratio and decode throughput
+    public BlockStats getBlockStats(String symbol) throws IOException {
+        Lock lock = getLock(symbol).readLock();
+        lock.lock();
+        try {
+            index.load(symbol);
+
+            int blocks = 0;
+            long records = 0;
+            long storedbytes = 0;
+            long decodenanos = 0;
+            List<T> items = new ArrayList<>();
+            try (FileChannelPool.Handle file = openForRead(symbol)) {
+                for (IndexNode node : index.get(symbol).values()) {
+                    ByteBuffer stored = readBlock(file, node);
+                    storedbytes += stored.remaining();
+
+                    long start = System.nanoTime();
+                    items.clear();
+                    adapter.fromByteBuffer(toRows(stored, node), symbol, node.getCount(), items);
+                    decodenanos += System.nanoTime() - start;
+
+                    blocks++;
+                    records += node.getCount();
+                }
+            }
+
+            long rawbytes = records * adapter.getRecordSizeBytes();
+            return new BlockStats(blocks, records, rawbytes, storedbytes, decodenanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void compact(String symbol) throws IOException {
+        Lock lock = getLock(symbol).writeLock();
+        lock.lock();
+        try {
+            index.load(symbol);
+            DateIndex dateIndex = index.get(symbol);
+            dateIndex.values().removeIf(node -> node.getCount() == 0);
+
+            // copy live blocks in date order into a new file
+            Path datapath = Paths.get(adapter.getDataFilePath(symbol));
+            Path temppath = Paths.get(String.format("%s.%s", datapath, COMPACT_EXTENSION));
+            List<Long> offsets = new ArrayList<>();
+            try (RandomAccessFile source = new RandomAccessFile(datapath.toFile(), "r");
+                 RandomAccessFile target = new RandomAccessFile(temppath.toFile(), "rw")) {
+                target.setLength(0);
+                byte[] bytes = new byte[0];
+                for (IndexNode node : dateIndex.values()) {
+                    int nbytes = storedBytes(source.getChannel(), node);
+                    if (bytes.length < nbytes) {
+                        bytes = new byte[nbytes];
+                    }
+
+                    source.seek(node.getOffset());
+                    if (readBytes(source, bytes, nbytes) < nbytes) {
+                        throw new IOException(String.format("Index node for date %s extends past the end of the file", node.getDate()));
+                    }
+
+                    offsets.add(target.getFilePointer());
+                    target.write(bytes, 0, nbytes);
+                }
+                target.getFD().sync();
+            }
+
+            Files.move(temppath, datapath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (channels != null) {
+                channels.invalidate(datapath);
+            }
+
+            // repoint the index at the compacted blocks
+            int i = 0;
+            for (IndexNode node : dateIndex.values()) {
+                node.setOffset(offsets.get(i++));
+            }
+
+            dateIndex.setDirty();
+            index.persist(symbol);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public void checkIntegrity(String symbol) throws FileStoreIntegrityException {
+        if (options.isAppendOnly() || options.getLayout() != BlockLayout.ROW) {
+            checkBlockIntegrity(symbol);
+            return;
+        }
 
-        String filename = adapter.getDataFilePath(symbol);
-        try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+        Lock lock = getLock(symbol).readLock();
+        lock.lock();
 
-            // read first record and rewind
-            T item = adapter.read(file, symbol);
-            file.seek(0);
+        try (FileChannelPool.Handle file = openForRead(symbol)) {
 
             long lastid = 0;
+            long position = 0;
             int numprices = 0;
-            long date = adapter.getItemDate(item);
+            long date = 0;
+            Optional<IndexNode> indexNode = Optional.empty();
 
-            Optional<IndexNode> indexNode = index.lookup(symbol, date);
+            List<T> items = new ArrayList<>();
+            ByteBuffer chunk = adapter.allocate(INTEGRITY_CHUNK_RECORDS);
 
-            while ((item = adapter.read(file, symbol)) != null) {
+            while (true) {
 
-                if (indexNode.isEmpty()) {
-                    throw new FileStoreIntegrityException(symbol, String.format("Unable to resolve index node for date %s", date));
+                // decode the next chunk of records
+                chunk.clear().limit(readBytes(file, chunk.array(), 0, chunk.capacity(), position));
+                position += chunk.limit();
+                items.clear();
+                adapter.fromByteBuffer(chunk, symbol, INTEGRITY_CHUNK_RECORDS, items);
+                if (items.isEmpty()) {
+                    break;
                 }
 
-                if (adapter.getItemDate(item) != date) {
-                    if (numprices != indexNode.get().getCount()) {
-                        throw new FileStoreIntegrityException(symbol, String.format("Index count mismatch for date %s", date));
+                for (T item : items) {
+
+                    if (date == 0) {
+                        date = adapter.getItemDate(item);
+                        indexNode = index.lookup(symbol, date);
                     }
-                    date = adapter.getItemDate(item);
-                    indexNode = index.lookup(symbol, date);
-                    numprices = 1;
-                } else {
-                    numprices++;
+
+                    if (indexNode.isEmpty()) {
+                        throw new FileStoreIntegrityException(symbol, String.format("Unable to resolve index node for date %s", date));
+                    }
+
+                    if (adapter.getItemDate(item) != date) {
+                        if (numprices != indexNode.get().getCount()) {
+                            throw new FileStoreIntegrityException(symbol, String.format("Index count mismatch for date %s", date));
+                        }
+                        date = adapter.getItemDate(item);
+                        indexNode = index.lookup(symbol, date);
+                        numprices = 1;
+                    } else {
+                        numprices++;
+                    }
+
+                    if (adapter.getItemId(item) <= lastid) {
+                        throw new FileStoreIntegrityException(symbol, String.format("Non-increasing ID detected for date %s", date));
+                    }
+
+                    lastid = adapter.getItemId(item);
+
                 }
 
-                if (adapter.getItemId(item) <= lastid) {
-                    throw new FileStoreIntegrityException(symbol, String.format("Non-increasing ID detected for date %s", date));
+            }
+
+        } catch (IOException ioex) {
+            throw new FileStoreIntegrityException(symbol, ioex.getMessage());
+        } finally {
+            lock.unlock();
+        }
+
+    }
+
+    private void checkBlockIntegrity(String symbol) throws FileStoreIntegrityException {
+
+        Lock lock = getLock(symbol).readLock();
+        lock.lock();
+
+        // appended or non-row blocks cannot be scanned as a flat run of records, so walk the index instead of the file
+        try (FileChannelPool.Handle file = openForRead(symbol)) {
+
+            long lastid = 0;
+            List<T> items = new ArrayList<>();
+            index.load(symbol);
+
+            for (IndexNode node : index.get(symbol).values()) {
+
+                int nbytes = storedBytes(file.getChannel(), node);
+                if (node.getOffset() + nbytes > file.getChannel().size()) {
+                    throw new FileStoreIntegrityException(symbol, String.format("Index node extends past the end of the file for date %s", node.getDate()));
                 }
 
-                lastid = adapter.getItemId(item);
+                ByteBuffer block = ByteBuffer.allocate(nbytes).order(ByteOrder.LITTLE_ENDIAN);
+                block.limit(readBytes(file, block.array(), 0, nbytes, node.getOffset()));
+                items.clear();
+                decodeBlock(block, symbol, node.getCount(), items);
+
+                if (items.size() != node.getCount()) {
+                    throw new FileStoreIntegrityException(symbol, String.format("Index count mismatch for date %s", node.getDate()));
+                }
+
+                for (T item : items) {
+
+                    if (adapter.getItemDate(item) != node.getDate()) {
+                        throw new FileStoreIntegrityException(symbol, String.format("Record date mismatch for date %s", node.getDate()));
+                    }
+
+                    if (adapter.getItemId(item) <= lastid) {
+                        throw new FileStoreIntegrityException(symbol, String.format("Non-increasing ID detected for date %s", node.getDate()));
+                    }
+
+                    lastid = adapter.getItemId(item);
+
+                }
 
             }
 
         } catch (IOException ioex) {
             throw new FileStoreIntegrityException(symbol, ioex.getMessage());
+        } finally {
+            lock.unlock();
+        }
+
+    }
+
+    public List<IntegrityIssue> verifyIntegrity(String symbol) throws IOException {
+        return verifyIntegrity(symbol, nbytes -> { });
+    }
+
+    // unlike checkIntegrity, walks every block and collects all problems instead of stopping at the first
+    // the file is mapped for the scan when it fits in one mapping; progress receives the bytes of each block as it is scanned
+    public List<IntegrityIssue> verifyIntegrity(String symbol, LongConsumer progress) throws IOException {
+
+        Lock lock = getLock(symbol).readLock();
+        lock.lock();
+
+        try {
+
+            index.load(symbol);
+            List<IntegrityIssue> issues = new ArrayList<>();
+
+            // a private mapping so that scanning a whole archive does not keep every file mapped afterwards
+            Optional<ByteBuffer> mapping = new MappedDataFile(adapter.getDataFilePath(symbol)).map();
+
+            try (FileChannelPool.Handle file = mapping.isPresent() ? null : openForRead(symbol)) {
+
+                long filesize = mapping.isPresent() ? mapping.get().capacity() : file.getChannel().size();
+                List<long[]> extents = new ArrayList<>();
+                List<T> items = new ArrayList<>();
+                long lastid = 0;
+
+                for (IndexNode node : index.get(symbol).values()) {
+
+                    if (node.getCount() == 0) {
+                        continue;
+                    }
+
+                    int nbytes;
+                    try {
+                        nbytes = mapping.isPresent() ? storedBytes(mapping.get(), node) : storedBytes(file.getChannel(), node);
+                    } catch (IOException ex) {
+                        issues.add(new IntegrityIssue(symbol, IntegrityIssue.Type.BLOCK_OUT_OF_BOUNDS, node.getDate(), node.getOffset(), 0, node.getCount(), ex.getMessage()));
+                        continue;
+                    }
+
+                    if (node.getOffset() + nbytes > filesize) {
+                        issues.add(new IntegrityIssue(symbol, IntegrityIssue.Type.BLOCK_OUT_OF_BOUNDS, node.getDate(), node.getOffset(), nbytes, node.getCount(),
+                                String.format("Index node for date %s extends past the end of the file", node.getDate())));
+                        continue;
+                    }
+
+                    extents.add(new long[] { node.getOffset(), node.getOffset() + nbytes });
+
+                    items.clear();
+                    try {
+                        ByteBuffer stored = mapping.isPresent() ? readBlock(mapping.get(), node) : readBlock(file, node);
+                        decodeBlock(stored, symbol, node.getCount(), items);
+                    } catch (IOException ex) {
+                        issues.add(new IntegrityIssue(symbol, IntegrityIssue.Type.CORRUPT_BLOCK, node.getDate(), node.getOffset(), nbytes, node.getCount(), ex.getMessage()));
+                        progress.accept(nbytes);
+                        continue;
+                    }
+
+                    if (items.size() != node.getCount()) {
+                        issues.add(new IntegrityIssue(symbol, IntegrityIssue.Type.COUNT_MISMATCH, node.getDate(), node.getOffset(), nbytes, node.getCount() - items.size(),
+                                String.format("Index count mismatch for date %s: %s indexed, %s decoded", node.getDate(), node.getCount(), items.size())));
+                    }
+
+                    // one issue per block and kind, counting the records affected
+                    long misdated = 0;
+                    long nonincreasing = 0;
+                    for (T item : items) {
+                        if (adapter.getItemDate(item) != node.getDate()) {
+                            misdated++;
+                        }
+                        if (adapter.getItemId(item) <= lastid) {
+                            nonincreasing++;
+                        }
+                        lastid = adapter.getItemId(item);
+                    }
+
+                    if (misdated > 0) {
+                        issues.add(new IntegrityIssue(symbol, IntegrityIssue.Type.DATE_MISMATCH, node.getDate(), node.getOffset(), nbytes, misdated,
+                                String.format("Record date mismatch for date %s", node.getDate())));
+                    }
+
+                    if (nonincreasing > 0) {
+                        issues.add(new IntegrityIssue(symbol, IntegrityIssue.Type.NON_INCREASING_ID, node.getDate(), node.getOffset(), nbytes, nonincreasing,
+                                String.format("Non-increasing ID detected for date %s", node.getDate())));
+                    }
+
+                    progress.accept(nbytes);
+
+                }
+
+                // any byte no block claims is orphaned, and any byte two blocks claim is an overlap
+                // append-only files keep superseded blocks until compaction, so their unclaimed bytes are the expected
+                // dead space getDeadBytes reports rather than issues
+                boolean deadspace = options.isAppendOnly();
+                extents.sort((a, b) -> Long.compare(a[0], b[0]));
+                long covered = 0;
+                for (long[] extent : extents) {
+                    if (extent[0] > covered && !deadspace) {
+                        issues.add(new IntegrityIssue(symbol, IntegrityIssue.Type.ORPHANED_BYTES, 0, covered, extent[0] - covered, 0,
+                                String.format("%s bytes at offset %s belong to no index node", extent[0] - covered, covered)));
+                    } else if (extent[0] < covered) {
+                        issues.add(new IntegrityIssue(symbol, IntegrityIssue.Type.OVERLAPPING_BLOCKS, 0, extent[0], Math.min(covered, extent[1]) - extent[0], 0,
+                                String.format("%s bytes at offset %s belong to more than one index node", Math.min(covered, extent[1]) - extent[0], extent[0])));
+                    }
+                    covered = Math.max(covered, extent[1]);
+                }
+
+                if (covered < filesize && !deadspace) {
+                    issues.add(new IntegrityIssue(symbol, IntegrityIssue.Type.ORPHANED_BYTES, 0, covered, filesize - covered, 0,
+                            String.format("%s bytes at offset %s belong to no index node", filesize - covered, covered)));
+                }
+
+            }
+
+            return issues;
+
+        } finally {
+            lock.unlock();
+        }
+
+    }
+
+    // recovers a lost or corrupt index from one sequential scan of the data file, replacing the index and any journal
+    // only in-place ROW files qualify; append-only files keep superseded blocks and other layouts need the index to find their blocks
+    public DateIndex rebuildIndex(String symbol) throws IOException {
+        if (options.isAppendOnly() || options.getLayout() != BlockLayout.ROW) {
+            throw new IOException(String.format("Unable to rebuild %s index: only in-place ROW data files can be scanned", symbol));
+        }
+
+        Lock lock = getLock(symbol).writeLock();
+        lock.lock();
+
+        try (FileChannelPool.Handle file = openForRead(symbol)) {
+
+            DateIndex dateIndex = new DateIndex();
+            int recordsize = adapter.getRecordSizeBytes();
+            ByteBuffer chunk = adapter.allocate(INTEGRITY_CHUNK_RECORDS);
+            long position = 0;
+            IndexNode node = null;
+
+            while (true) {
+
+                chunk.clear().limit(readBytes(file, chunk.array(), 0, chunk.capacity(), position));
+                if (chunk.remaining() < recordsize) {
+                    break;
+                }
+
+                while (chunk.remaining() >= recordsize) {
+                    long offset = position + chunk.position();
+                    T item = adapter.fromByteBuffer(chunk, symbol);
+                    if (item == null) {
+                        throw new IOException(String.format("Unable to rebuild %s index: unreadable record at offset %s", symbol, offset));
+                    }
+
+                    long date = adapter.getItemDate(item);
+                    if (node != null && date == node.getDate()) {
+                        node.setCount(node.getCount() + 1);
+                    } else if (node != null && date < node.getDate() || dateIndex.containsKey(date)) {
+                        throw new IOException(String.format("Unable to rebuild %s index: records for date %s are out of order at offset %s", symbol, date, offset));
+                    } else {
+                        node = new IndexNode(date, offset, 1);
+                        dateIndex.put(date, node);
+                    }
+                }
+
+                position += chunk.position();
+
+            }
+
+            index.reset(symbol, dateIndex);
+            invalidateCache(symbol);
+            return dateIndex;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // per-thread block buffers so that repeated reads do not allocate
+    private static class ScratchBuffers {
+
+        private ByteBuffer stored = ByteBuffer.allocate(0);
+        private ByteBuffer rows = ByteBuffer.allocate(0);
+
+        private ByteBuffer stored(int nbytes) {
+            stored = ensureCapacity(stored, nbytes);
+            return stored;
+        }
+
+        private ByteBuffer rows(int nbytes) {
+            rows = ensureCapacity(rows, nbytes);
+            return rows;
+        }
+
+        private static ByteBuffer ensureCapacity(ByteBuffer buffer, int nbytes) {
+            if (buffer.capacity() < nbytes) {
+                buffer = ByteBuffer.allocate(Math.max(nbytes, buffer.capacity() * 2));
+            }
+            return buffer.clear().limit(nbytes).order(ByteOrder.LITTLE_ENDIAN);
         }
 
     }
@@ -0,0 +1,83 @@
+package com.adamhedges.financial.storage;
+
+import com.adamhedges.financial.storage.io.FileChannelPool;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// lazily decodes a date range in bounded chunks; each chunk is read under the symbol's read lock
+public class FileStoreCursor<T extends Comparable<T>> implements Iterator<T>, AutoCloseable {
+
+    private final FileStore<T> fileStore;
+
+    final String symbol;
+    final long throughDate;
+    final int chunkRecords;
+
+    // day and record within that day to continue from
+    long date;
+    int position = 0;
+    boolean exhausted;
+
+    FileChannelPool.Handle file = null;
+    Object fileKey = null;
+
+    final List<T> chunk = new ArrayList<>();
+    private int chunkIndex = 0;
+
+    FileStoreCursor(FileStore<T> fileStore, String symbol, long fromDate, long throughDate, int chunkRecords, boolean exhausted) {
+        this.fileStore = fileStore;
+        this.symbol = symbol;
+        this.date = fromDate;
+        this.throughDate = throughDate;
+        this.chunkRecords = chunkRecords;
+        this.exhausted = exhausted;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (chunkIndex >= chunk.size()) {
+            if (exhausted) {
+                close();
+                return false;
+            }
+
+            chunk.clear();
+            chunkIndex = 0;
+            try {
+                fileStore.fill(this);
+            } catch (IOException ioex) {
+                close();
+                throw new UncheckedIOException(ioex);
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return chunk.get(chunkIndex++);
+    }
+
+    @Override
+    public void close() {
+        exhausted = true;
+        chunk.clear();
+        chunkIndex = 0;
+
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.adamhedges.financial.storage;
+
+import com.adamhedges.financial.storage.durability.SyncPolicy;
+import com.adamhedges.financial.storage.index.IndexFormat;
+import com.adamhedges.financial.storage.layout.BlockLayout;
+import lombok.Data;
+
+@Data
+public class FileStoreOptions {
+
+    // decode reads from a memory-mapped view of the data file instead of seeking and reading record by record
+    private boolean mappedReads = false;
+
+    // write new and grown day blocks at the end of the file instead of shifting newer blocks; see FileStore.compact
+    private boolean appendOnly = false;
+
+    // on-disk index format; existing CSV indexes are converted the first time they are loaded in another format
+    private IndexFormat indexFormat = IndexFormat.CSV;
+
+    // journal changed index nodes and only rewrite the full index after this many entries; 0 rewrites on every write
+    private int indexJournalEntries = 0;
+
+    // arrangement of records within each day block; COLUMNAR requires DataAdapter.getColumns
+    private BlockLayout layout = BlockLayout.ROW;
+
+    // unload the least recently used symbol indexes beyond this many, persisting unsaved changes first; 0 keeps every index loaded
+    private int maxResidentSymbols = 0;
+
+    // keep up to this many read-only data file channels open between reads; 0 opens a new channel for every read
+    private int maxOpenFiles = 0;
+
+    // keep a DailySummary per stored day up to date on every write; requires DataAdapter.summarize
+    private boolean dailyRollup = false;
+
+    // keep recently read day blocks decoded, up to about this many heap bytes as the adapter estimates them; 0 disables the cache
+    // reads are given copies of the cached items, made by the adapter's copy method
+    private long blockCacheBytes = 0;
+
+    // log every write ahead of applying it and replay the log on open; see SyncPolicy for when writes are forced to disk
+    private SyncPolicy syncPolicy = SyncPolicy.NONE;
+
+    // how often SyncPolicy.INTERVAL forces the log
+    private long syncIntervalMillis = 100;
+
+    // force written data files and indexes and empty the log once it grows past this many bytes
+    private long syncCheckpointBytes = 64L * 1024 * 1024;
+
+}
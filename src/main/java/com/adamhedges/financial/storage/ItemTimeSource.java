@@ -0,0 +1,9 @@
+package com.adamhedges.financial.storage;
+
+// implemented by adapters whose items carry a time of day, which intra-day reads search on
+public interface ItemTimeSource<T> {
+
+    // the natural order of items within a day must agree with it
+    long getItemTime(T item);
+
+}
@@ -0,0 +1,46 @@
+package com.adamhedges.financial.storage;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// the executor that per-symbol work is fanned out over: either a fixed pool of named daemon threads that close shuts down,
+// or one the caller owns, e.g. Executors.newVirtualThreadPerTaskExecutor(), that close leaves running
+public class WorkerPool implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    public WorkerPool(String name, int parallelism) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, String.format("filestore-%s-%s", name, threadCount.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ownsExecutor = true;
+    }
+
+    public WorkerPool(ExecutorService executor) {
+        this.executor = executor;
+        this.ownsExecutor = false;
+    }
+
+    public Future<?> submit(Runnable task) {
+        return executor.submit(task);
+    }
+
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    // an owned pool finishes the tasks already submitted but takes no more
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+}
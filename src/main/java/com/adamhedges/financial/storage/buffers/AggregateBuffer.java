@@ -10,6 +10,7 @@ import java.util.LinkedList;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 
 public class AggregateBuffer extends FeedForwardBuffer {
 
@@ -18,6 +19,9 @@ public class AggregateBuffer extends FeedForwardBuffer {
 
     private final Logger logger;
 
+    // receives every captured bar, e.g. a FileStoreSink; null when bars are not teed anywhere
+    private final Consumer<PriceBar> sink;
+
     private final Semaphore lock = new Semaphore(1);
     private final Queue<PriceBar> buffer = new LinkedList<>();
 
@@ -25,15 +29,18 @@ public class AggregateBuffer extends FeedForwardBuffer {
     private PriceBar lastBar;
 
     public AggregateBuffer(String symbol) {
-        super();
-        this.symbol = symbol;
-        this.logger = null;
+        this(symbol, null, null);
     }
 
     public AggregateBuffer(String symbol, Logger logger) {
+        this(symbol, logger, null);
+    }
+
+    public AggregateBuffer(String symbol, Logger logger, Consumer<PriceBar> sink) {
         super();
         this.symbol = symbol;
         this.logger = logger;
+        this.sink = sink;
     }
 
     public void set(PriceBar bar) {
@@ -77,6 +84,10 @@ public class AggregateBuffer extends FeedForwardBuffer {
             lock.release();
         }
 
+        if (sink != null) {
+            ret.ifPresent(sink);
+        }
+
         return ret;
     }
 
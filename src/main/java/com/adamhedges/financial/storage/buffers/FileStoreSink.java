@@ -0,0 +1,93 @@
+package com.adamhedges.financial.storage.buffers;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.financial.storage.FileStore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+// persists captured bars as they arrive by appending them to the current day's block with FileStore.append
+// bars are appended every flushBars bars and whenever the date changes, so little is left to write at the close
+// bars that fail to append stay pending and are retried by the next flush; the failure is kept in lastError
+public class FileStoreSink implements Consumer<PriceBar>, AutoCloseable {
+
+    private final FileStore<PriceBar> fileStore;
+    private final String symbol;
+    private final int flushBars;
+
+    // pending bars by date, since a failed flush can leave a day behind when the next one starts
+    private final TreeMap<Long, List<PriceBar>> pending = new TreeMap<>();
+    private int pendingBars = 0;
+    private long lastDate = 0;
+    private IOException lastError = null;
+
+    public FileStoreSink(FileStore<PriceBar> fileStore, String symbol) {
+        this(fileStore, symbol, 1);
+    }
+
+    public FileStoreSink(FileStore<PriceBar> fileStore, String symbol, int flushBars) {
+        this.fileStore = fileStore;
+        this.symbol = symbol;
+        this.flushBars = flushBars;
+    }
+
+    @Override
+    public synchronized void accept(PriceBar bar) {
+        if (pendingBars > 0 && bar.getDate() != lastDate) {
+            flushQuietly();
+        }
+
+        lastDate = bar.getDate();
+        pending.computeIfAbsent(bar.getDate(), d -> new ArrayList<>()).add(bar);
+        pendingBars++;
+        if (pendingBars >= flushBars) {
+            flushQuietly();
+        }
+    }
+
+    // appends the pending bars day by day; a failed day and those after it stay pending
+    public synchronized void flush() throws IOException {
+        Iterator<Map.Entry<Long, List<PriceBar>>> days = pending.entrySet().iterator();
+        while (days.hasNext()) {
+            Map.Entry<Long, List<PriceBar>> day = days.next();
+            try {
+                fileStore.append(symbol, day.getKey(), new ArrayList<>(day.getValue()));
+            } catch (IOException ioex) {
+                lastError = ioex;
+                throw ioex;
+            }
+            pendingBars -= day.getValue().size();
+            days.remove();
+        }
+        lastError = null;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException ioex) {
+            System.out.printf("Unable to append %s bars, %d left pending: %s%n", symbol, pendingBars, ioex.getMessage());
+        }
+    }
+
+    public synchronized int getPendingBars() {
+        return pendingBars;
+    }
+
+    // the failure of the last flush, empty once a flush succeeds
+    public synchronized Optional<IOException> getLastError() {
+        return Optional.ofNullable(lastError);
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+}
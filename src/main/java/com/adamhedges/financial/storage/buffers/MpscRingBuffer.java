@@ -0,0 +1,95 @@
+package com.adamhedges.financial.storage.buffers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+// bounded lock-free queue for many producers and one consumer; slots are preallocated, so offer and poll never allocate
+// each slot carries a sequence number: position when free for the producer claiming position, position + 1 once filled
+public class MpscRingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    // capacity is rounded up to a power of two
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException(String.format("Invalid ring buffer capacity %s", capacity));
+        }
+
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    // any thread; false when the buffer is full
+    public boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, element);
+                    // publishes the element to the consumer
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                // the consumer has not freed the slot from the previous lap
+                return false;
+            }
+            // otherwise another producer claimed this position first
+        }
+    }
+
+    // consumer thread only; null when empty or when the next producer has claimed its slot but not filled it yet
+    public E poll() {
+        long position = head.get();
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+
+        E element = slots.get(index);
+        slots.lazySet(index, null);
+        sequences.lazySet(index, position + capacity);
+        head.lazySet(position + 1);
+        return element;
+    }
+
+    // consumer thread only; hands up to limit elements to the consumer in order, returning how many
+    public int drainTo(Consumer<? super E> consumer, int limit) {
+        int n = 0;
+        while (n < limit) {
+            E element = poll();
+            if (element == null) {
+                break;
+            }
+            consumer.accept(element);
+            n++;
+        }
+        return n;
+    }
+
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(capacity, size));
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.adamhedges.financial.storage.buffers;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.financial.storage.helpers.PriceBarResampler;
+import com.adamhedges.utilities.datetime.DateUtilities;
+
+import java.time.Instant;
+import java.util.LinkedList;
+import java.util.Optional;
+import java.util.Queue;
+
+// feeds the minute bars of another buffer through a PriceBarResampler and hands out the resampled bars
+public class ResamplingBuffer extends FeedForwardBuffer {
+
+    private final FeedForwardBuffer source;
+    private final PriceBarResampler resampler;
+    private final Queue<PriceBar> completed = new LinkedList<>();
+
+    private int index = 0;
+
+    public ResamplingBuffer(String symbol, FeedForwardBuffer source, int intervalMinutes) {
+        this(symbol, source, intervalMinutes, 0);
+    }
+
+    public ResamplingBuffer(String symbol, FeedForwardBuffer source, int intervalMinutes, int anchorTime) {
+        super();
+        this.source = source;
+        this.resampler = new PriceBarResampler(symbol, intervalMinutes, anchorTime, completed::add);
+    }
+
+    @Override
+    public Optional<PriceBar> peek() {
+        return next == null ? Optional.empty() : Optional.of(next);
+    }
+
+    @Override
+    public Optional<PriceBar> getNext() {
+        return getNext(DateUtilities.getZonedNowInstant(DateUtilities.EASTERN_TIMEZONE));
+    }
+
+    @Override
+    public Optional<PriceBar> getNext(Instant timestamp) {
+        // pull source bars until an interval completes or the source has nothing more for now
+        while (completed.isEmpty()) {
+            Optional<PriceBar> bar = source.getNext(timestamp);
+            if (bar.isEmpty()) {
+                break;
+            }
+            resampler.add(bar.get());
+        }
+
+        PriceBar bar = completed.poll();
+        if (bar == null) {
+            return Optional.empty();
+        }
+
+        prev = next;
+        next = bar;
+        index++;
+
+        return Optional.of(next);
+    }
+
+    // emits the interval in progress, e.g. at the end of a historical replay or an early close
+    public void flush() {
+        resampler.flush();
+    }
+
+    @Override
+    public Optional<PriceBar> getPrev() {
+        return prev == null ? Optional.empty() : Optional.of(prev);
+    }
+
+    @Override
+    public int getSize() {
+        return completed.size();
+    }
+
+    @Override
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public void clear() {
+        resampler.clear();
+        completed.clear();
+        index = 0;
+        next = null;
+        prev = null;
+    }
+
+}
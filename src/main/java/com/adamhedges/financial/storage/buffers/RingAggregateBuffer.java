@@ -0,0 +1,134 @@
+package com.adamhedges.financial.storage.buffers;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.utilities.datetime.DateUtilities;
+import com.adamhedges.utilities.logger.Logger;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// AggregateBuffer over a preallocated MpscRingBuffer: any number of feed threads may set bars without locking,
+// while getNext, drainTo and clear belong to a single consumer thread
+// set never blocks; once capacity bars are waiting it refuses the bar and returns false
+public class RingAggregateBuffer extends FeedForwardBuffer {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    @Getter
+    private final String symbol;
+
+    private final Logger logger;
+
+    // receives every captured bar on the consumer thread, e.g. a FileStoreSink; null when bars are not teed anywhere
+    private final Consumer<PriceBar> sink;
+    private final MpscRingBuffer<PriceBar> buffer;
+
+    @Getter
+    private volatile PriceBar lastBar;
+
+    public RingAggregateBuffer(String symbol) {
+        this(symbol, DEFAULT_CAPACITY, null);
+    }
+
+    public RingAggregateBuffer(String symbol, int capacity) {
+        this(symbol, capacity, null);
+    }
+
+    public RingAggregateBuffer(String symbol, int capacity, Logger logger) {
+        this(symbol, capacity, logger, null);
+    }
+
+    public RingAggregateBuffer(String symbol, int capacity, Logger logger, Consumer<PriceBar> sink) {
+        super();
+        this.symbol = symbol;
+        this.logger = logger;
+        this.sink = sink;
+        this.buffer = new MpscRingBuffer<>(capacity);
+    }
+
+    public boolean set(PriceBar bar) {
+        tryLog(() -> String.format("Buffering bar %s [ %s ]", symbol, bar));
+        if (!buffer.offer(bar)) {
+            tryLog(() -> String.format("Dropped bar %s [ %s ]: buffer full", symbol, bar));
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Optional<PriceBar> peek() {
+        return lastBar == null ? Optional.empty() : Optional.of(lastBar);
+    }
+
+    @Override
+    public Optional<PriceBar> getNext() {
+        return getNext(DateUtilities.getZonedNowInstant(DateUtilities.EASTERN_TIMEZONE));
+    }
+
+    @Override
+    public Optional<PriceBar> getNext(Instant timestamp) {
+        PriceBar nextBar = buffer.poll();
+        if (nextBar == null) {
+            return Optional.empty();
+        }
+
+        capture(nextBar);
+        return Optional.of(nextBar);
+    }
+
+    // hands every waiting bar, up to limit, to the consumer in arrival order and returns how many
+    public int drainTo(Consumer<PriceBar> consumer, int limit) {
+        return buffer.drainTo(bar -> {
+            capture(bar);
+            consumer.accept(bar);
+        }, limit);
+    }
+
+    public int drainTo(Consumer<PriceBar> consumer) {
+        return drainTo(consumer, Integer.MAX_VALUE);
+    }
+
+    private void capture(PriceBar bar) {
+        tryLog(() -> String.format("Captured bar %s [ %s ]", symbol, bar));
+        prev = lastBar;
+        lastBar = bar;
+        if (sink != null) {
+            sink.accept(bar);
+        }
+    }
+
+    @Override
+    public Optional<PriceBar> getPrev() {
+        return prev == null ? Optional.empty() : Optional.of(prev);
+    }
+
+    @Override
+    public int getSize() {
+        return buffer.size();
+    }
+
+    @Override
+    public int getIndex() {
+        return 0;
+    }
+
+    @Override
+    public void clear() {
+        while (buffer.poll() != null) { }
+        next = null;
+        prev = null;
+    }
+
+    // messages are only built when a logger is attached
+    private void tryLog(Supplier<String> message) {
+        if (logger == null) {
+            return;
+        }
+
+        logger.log(message.get());
+    }
+
+}
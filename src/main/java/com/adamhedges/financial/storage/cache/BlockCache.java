@@ -0,0 +1,115 @@
+package com.adamhedges.financial.storage.cache;
+
+import com.adamhedges.financial.storage.index.IndexNode;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// least recently used decoded day blocks, keyed by symbol and date and bounded by an estimate of their heap size in bytes
+// the cached items are shared by every caller of get, so callers copy them before handing them out, as FileStore does
+public class BlockCache<T> {
+
+    @Getter
+    private final long maxBytes;
+
+    @Getter
+    private volatile long sizeBytes = 0;
+    @Getter
+    private volatile long hits = 0;
+    @Getter
+    private volatile long misses = 0;
+    @Getter
+    private volatile long evictions = 0;
+
+    private final LinkedHashMap<BlockKey, Block<T>> blocks = new LinkedHashMap<>(16, 0.75f, true);
+
+    public BlockCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // the cached items for the node, or null when missing or cached for a different record count
+    public synchronized List<T> get(String symbol, IndexNode node) {
+        BlockKey key = new BlockKey(symbol, node.getDate());
+        Block<T> block = blocks.get(key);
+        if (block != null && block.items.size() != node.getCount()) {
+            remove(key);
+            block = null;
+        }
+
+        if (block == null) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return block.items;
+    }
+
+    public synchronized void put(String symbol, IndexNode node, List<T> items, long nbytes) {
+        if (nbytes > maxBytes) {
+            return;
+        }
+
+        remove(new BlockKey(symbol, node.getDate()));
+        blocks.put(new BlockKey(symbol, node.getDate()), new Block<>(Collections.unmodifiableList(items), nbytes));
+        sizeBytes += nbytes;
+
+        Iterator<Block<T>> eldest = blocks.values().iterator();
+        while (sizeBytes > maxBytes && eldest.hasNext()) {
+            sizeBytes -= eldest.next().nbytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void invalidate(String symbol, long date) {
+        remove(new BlockKey(symbol, date));
+    }
+
+    public synchronized void invalidate(String symbol) {
+        Iterator<Map.Entry<BlockKey, Block<T>>> entries = blocks.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<BlockKey, Block<T>> entry = entries.next();
+            if (entry.getKey().symbol.equals(symbol)) {
+                sizeBytes -= entry.getValue().nbytes;
+                entries.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        blocks.clear();
+        sizeBytes = 0;
+    }
+
+    public synchronized int size() {
+        return blocks.size();
+    }
+
+    private void remove(BlockKey key) {
+        Block<T> removed = blocks.remove(key);
+        if (removed != null) {
+            sizeBytes -= removed.nbytes;
+        }
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class BlockKey {
+        private final String symbol;
+        private final long date;
+    }
+
+    @AllArgsConstructor
+    private static class Block<T> {
+        private final List<T> items;
+        private final long nbytes;
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.adamhedges.financial.storage.durability;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+
+// one logged day write; rows are in the adapter's row format whatever the store's block layout,
+// except for a tail record, whose rows are the index nodes from date onwards followed by the stored bytes they point at
+@AllArgsConstructor
+@Getter
+public class LogRecord {
+
+    public enum Kind {
+        // the rows replace the whole day
+        WRITE,
+        // the rows follow the day's existing rows
+        APPEND,
+        // the rewritten end of the data file, from the first of count index nodes to the end of the file
+        TAIL
+    }
+
+    private final Kind kind;
+    private final String symbol;
+    private final long date;
+    private final int count;
+    private final ByteBuffer rows;
+
+}
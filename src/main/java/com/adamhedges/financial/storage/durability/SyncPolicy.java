@@ -0,0 +1,17 @@
+package com.adamhedges.financial.storage.durability;
+
+public enum SyncPolicy {
+
+    // no write-ahead log; writes reach the disk whenever the operating system flushes them
+    NONE,
+
+    // log every write but leave flushing the log to the operating system; survives a process crash, not a power loss
+    OS,
+
+    // force the log on a timer; a crash loses at most the last interval of writes
+    INTERVAL,
+
+    // return from a write only once its log record is on disk; concurrent writes share one fsync
+    ALWAYS
+
+}
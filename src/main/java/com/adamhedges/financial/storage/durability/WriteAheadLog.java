@@ -0,0 +1,332 @@
+package com.adamhedges.financial.storage.durability;
+
+import com.adamhedges.financial.storage.DataAdapter;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+// redo log of day writes and appends with group commit: one fsync covers every record appended before it started
+public class WriteAheadLog implements AutoCloseable {
+
+    public static final String EXTENSION = "wal";
+
+    // record length and checksum ahead of each record
+    private static final int HEADER_BYTES = 8;
+
+    // kind, symbol length, date and count
+    private static final int MIN_PAYLOAD_BYTES = 1 + 2 + 8 + 4;
+
+    private final SyncPolicy policy;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+    private final ScheduledExecutorService timer;
+
+    // positions count every byte ever appended, so they stay ordered across truncation
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition synced = lock.newCondition();
+    private long appended = 0;
+    private long appendedRecords = 0;
+    private long durable = 0;
+    private long durableRecords = 0;
+    private long truncated = 0;
+    private boolean syncing = false;
+
+    @Getter
+    private final AtomicLong syncs = new AtomicLong();
+    @Getter
+    private final AtomicLong syncedRecords = new AtomicLong();
+    @Getter
+    private final AtomicLong syncNanos = new AtomicLong();
+    @Getter
+    private final AtomicLong commits = new AtomicLong();
+    @Getter
+    private final AtomicLong commitNanos = new AtomicLong();
+
+    // opens the log and locks it against other stores; records left by a crash stay until read and truncated
+    public WriteAheadLog(Path path, SyncPolicy policy, long syncIntervalMillis) throws IOException {
+        this.policy = policy;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        FileLock acquired;
+        try {
+            acquired = channel.tryLock();
+        } catch (OverlappingFileLockException ex) {
+            acquired = null;
+        }
+        if (acquired == null) {
+            channel.close();
+            throw new IOException(String.format("Write-ahead log %s is in use by another store", path));
+        }
+        this.fileLock = acquired;
+        this.channel.position(channel.size());
+
+        if (policy == SyncPolicy.INTERVAL) {
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "filestore-wal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            timer = null;
+        }
+    }
+
+    // one log per adapter class in the adapter's index directory, so stores of different adapters never replay each other's records
+    public static Path getPath(DataAdapter<?> adapter) {
+        return Paths.get(adapter.getIndexFilePath(adapter.getClass().getName(), EXTENSION));
+    }
+
+    // the records currently in this log
+    public List<LogRecord> read() throws IOException {
+        lock.lock();
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) { }
+            return parse(buffer.flip());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // records in the order they were logged; a torn or corrupt record ends the log
+    public static List<LogRecord> read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return new ArrayList<>();
+        }
+
+        return parse(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    private static List<LogRecord> parse(ByteBuffer buffer) {
+        List<LogRecord> records = new ArrayList<>();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            // a zero-filled tail has a zero length and a matching zero checksum, so short records end the log too
+            if (length < MIN_PAYLOAD_BYTES || length > buffer.remaining()) {
+                break;
+            }
+
+            ByteBuffer payload = buffer.slice(buffer.position(), length).order(ByteOrder.LITTLE_ENDIAN);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            int kind = payload.get();
+            int symbolLength = payload.getShort();
+            if (kind < 0 || kind >= LogRecord.Kind.values().length || symbolLength < 0 || symbolLength > length - MIN_PAYLOAD_BYTES) {
+                break;
+            }
+            buffer.position(buffer.position() + length);
+
+            byte[] symbol = new byte[symbolLength];
+            payload.get(symbol);
+            long date = payload.getLong();
+            int count = payload.getInt();
+            records.add(new LogRecord(LogRecord.Kind.values()[kind], new String(symbol, StandardCharsets.UTF_8), date, count, payload.slice().order(ByteOrder.LITTLE_ENDIAN)));
+        }
+
+        return records;
+    }
+
+    // appends a whole-day write without forcing; returns the position to pass to commit
+    public long append(String symbol, long date, int count, ByteBuffer rows) throws IOException {
+        return append(LogRecord.Kind.WRITE, symbol, date, count, rows);
+    }
+
+    public long append(LogRecord.Kind kind, String symbol, long date, int count, ByteBuffer rows) throws IOException {
+        byte[] name = symbol.getBytes(StandardCharsets.UTF_8);
+        int length = MIN_PAYLOAD_BYTES + name.length + rows.remaining();
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + length).order(ByteOrder.LITTLE_ENDIAN);
+        record.position(HEADER_BYTES);
+        record.put((byte) kind.ordinal());
+        record.putShort((short) name.length);
+        record.put(name);
+        record.putLong(date);
+        record.putInt(count);
+        record.put(rows);
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_BYTES, length);
+        record.putInt(0, length);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+
+        lock.lock();
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            appended += record.limit();
+            appendedRecords++;
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // under ALWAYS, waits until the log is on disk through position; the first waiter forces it for everyone queued behind it
+    public void commit(long position) throws IOException {
+        if (policy != SyncPolicy.ALWAYS) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            while (durable < position) {
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                } else {
+                    sync();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        commits.incrementAndGet();
+        commitNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    // forces everything appended so far
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            long target = appended;
+            while (durable < target) {
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                } else {
+                    sync();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // empties the log once the writes it holds are durable elsewhere; the caller must keep new appends out meanwhile
+    public void truncate() throws IOException {
+        lock.lock();
+        try {
+            while (syncing) {
+                synced.awaitUninterruptibly();
+            }
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+            truncated = appended;
+            durable = appended;
+            durableRecords = appendedRecords;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // bytes in the log since it was last truncated
+    public long getSize() {
+        lock.lock();
+        try {
+            return appended - truncated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getAverageBatchSize() {
+        return syncs.get() == 0 ? 0.0 : (double) syncedRecords.get() / syncs.get();
+    }
+
+    public double getAverageSyncMillis() {
+        return syncs.get() == 0 ? 0.0 : syncNanos.get() / 1e6 / syncs.get();
+    }
+
+    public double getAverageCommitMillis() {
+        return commits.get() == 0 ? 0.0 : commitNanos.get() / 1e6 / commits.get();
+    }
+
+    // called holding the lock; the lock is released during the fsync so that writers can append the next batch
+    private void sync() throws IOException {
+        syncing = true;
+        long target = appended;
+        long records = appendedRecords;
+        lock.unlock();
+
+        IOException failure = null;
+        long start = System.nanoTime();
+        try {
+            channel.force(false);
+        } catch (IOException ex) {
+            failure = ex;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        lock.lock();
+        syncing = false;
+        synced.signalAll();
+        if (failure != null) {
+            throw failure;
+        }
+
+        if (target > durable) {
+            syncs.incrementAndGet();
+            syncedRecords.addAndGet(records - durableRecords);
+            syncNanos.addAndGet(elapsed);
+            durable = target;
+            durableRecords = records;
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            flush();
+        } catch (IOException ioex) {
+            System.out.printf("Unable to sync write-ahead log: %s%n", ioex.getMessage());
+        }
+    }
+
+    // forces what is left unless the policy leaves that to the operating system, then releases the log
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+
+        if (timer != null) {
+            timer.shutdown();
+        }
+        try {
+            if (policy != SyncPolicy.OS) {
+                flush();
+            }
+        } finally {
+            fileLock.release();
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.adamhedges.financial.storage.helpers;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+// struct-of-arrays holder for price bars that can be cleared and refilled without allocating
+@Getter
+public class PriceBarColumns {
+
+    private long[] ids;
+    private long[] dates;
+    private int[] times;
+    private double[] opens;
+    private double[] highs;
+    private double[] lows;
+    private double[] closes;
+    private long[] volumes;
+
+    private int size = 0;
+
+    public PriceBarColumns() {
+        this(1024);
+    }
+
+    public PriceBarColumns(int capacity) {
+        ids = new long[capacity];
+        dates = new long[capacity];
+        times = new int[capacity];
+        opens = new double[capacity];
+        highs = new double[capacity];
+        lows = new double[capacity];
+        closes = new double[capacity];
+        volumes = new long[capacity];
+    }
+
+    public int getCapacity() {
+        return ids.length;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+
+        int n = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, n);
+        dates = Arrays.copyOf(dates, n);
+        times = Arrays.copyOf(times, n);
+        opens = Arrays.copyOf(opens, n);
+        highs = Arrays.copyOf(highs, n);
+        lows = Arrays.copyOf(lows, n);
+        closes = Arrays.copyOf(closes, n);
+        volumes = Arrays.copyOf(volumes, n);
+    }
+
+    public int add(long id, long date, int time, double open, double high, double low, double close, long volume) {
+        ensureCapacity(size + 1);
+        ids[size] = id;
+        dates[size] = date;
+        times[size] = time;
+        opens[size] = open;
+        highs[size] = high;
+        lows[size] = low;
+        closes[size] = close;
+        volumes[size] = volume;
+        return size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+}
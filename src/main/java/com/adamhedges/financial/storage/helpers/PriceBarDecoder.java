@@ -0,0 +1,11 @@
+package com.adamhedges.financial.storage.helpers;
+
+import java.nio.ByteBuffer;
+
+// implemented by price bar adapters that can decode a record without creating a PriceBar
+public interface PriceBarDecoder {
+
+    // decodes one record at the source's position into the next row of target, advancing the source
+    void decode(ByteBuffer source, PriceBarColumns target);
+
+}
@@ -1,9 +1,10 @@
 package com.adamhedges.financial.storage.helpers;
 
 import com.adamhedges.financial.storage.FileStore;
-import com.adamhedges.financial.storage.index.IndexNode;
 import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.financial.storage.rollup.DailySummary;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -16,24 +17,79 @@ public class PriceBarFileStoreHelpers {
 
     public static List<PriceBar> getBackfillBars(FileStore<PriceBar> fileStore, String symbol, int numBars, Long beforeDate) {
 
-        Optional<IndexNode> dateNode = fileStore.index.last(symbol);
-        if (dateNode.isEmpty()) {
+        // walk back from the last day, or from the last day before beforeDate, until enough bars are found
+        long throughDate = beforeDate == null ? Long.MAX_VALUE : beforeDate - 1;
+
+        try {
+            return fileStore.readTail(symbol, throughDate, numBars);
+        } catch (IOException ioex) {
+            System.out.printf("Unable to read %s backfill bars: %s%n", symbol, ioex.getMessage());
             return new ArrayList<>();
         }
 
-        long date = dateNode.get().getDate();
+    }
+
+    // fills target with the bars in the range, reusing its arrays; the adapter must implement PriceBarDecoder
+    public static void read(FileStore<PriceBar> fileStore, String symbol, long fromDate, long throughDate, PriceBarColumns target) throws IOException {
+        if (!(fileStore.adapter instanceof PriceBarDecoder decoder)) {
+            throw new IllegalArgumentException("Data adapter does not implement PriceBarDecoder");
+        }
 
-        if (beforeDate != null && beforeDate <= dateNode.get().getDate()) {
-            Optional<IndexNode> beforeDateNode = fileStore.index.prev(symbol, beforeDate);
-            if (beforeDateNode.isPresent()) {
-                date = beforeDateNode.get().getDate();
+        int recordsize = fileStore.adapter.getRecordSizeBytes();
+        target.clear();
+        fileStore.visit(symbol, fromDate, throughDate, (node, rows) -> {
+            int n = Math.min(node.getCount(), rows.remaining() / recordsize);
+            target.ensureCapacity(target.getSize() + n);
+            for (int i = 0; i < n; i++) {
+                decoder.decode(rows, target);
             }
+        });
+    }
+
+    public static List<PriceBar> resample(FileStore<PriceBar> fileStore, String symbol, long fromDate, long throughDate, int intervalMinutes) throws IOException {
+        return resample(fileStore, symbol, fromDate, throughDate, intervalMinutes, 0);
+    }
+
+    // aggregates the stored minute bars in the range into intervalMinutes bars, decoding records straight into the resampler
+    public static List<PriceBar> resample(FileStore<PriceBar> fileStore, String symbol, long fromDate, long throughDate, int intervalMinutes, int anchorTime) throws IOException {
+        if (!(fileStore.adapter instanceof PriceBarDecoder decoder)) {
+            throw new IllegalArgumentException("Data adapter does not implement PriceBarDecoder");
         }
 
-        List<PriceBar> bars = fileStore.read(symbol, date);
-        int n = Math.min(numBars, bars.size());
-        return bars.subList(bars.size() - n, bars.size());
+        List<PriceBar> bars = new ArrayList<>();
+        PriceBarResampler resampler = new PriceBarResampler(symbol, intervalMinutes, anchorTime, bars::add);
 
+        // one record at a time through a single-row holder, so no minute bar is ever materialized
+        PriceBarColumns row = new PriceBarColumns(1);
+        int recordsize = fileStore.adapter.getRecordSizeBytes();
+        fileStore.visit(symbol, fromDate, throughDate, (node, rows) -> {
+            int n = Math.min(node.getCount(), rows.remaining() / recordsize);
+            for (int i = 0; i < n; i++) {
+                row.clear();
+                decoder.decode(rows, row);
+                resampler.add(row, 0);
+            }
+        });
+
+        resampler.flush();
+        return bars;
+    }
+
+    // daily rollup summary of one day's bars in time order, for adapters to return from DataAdapter.summarize
+    public static Optional<DailySummary> summarize(long date, List<PriceBar> bars) {
+        if (bars.isEmpty()) {
+            return Optional.empty();
+        }
+
+        PriceBar first = bars.get(0);
+        PriceBar last = bars.get(bars.size() - 1);
+        DailySummary summary = new DailySummary(date, bars.size(), first.getId(), last.getId(), first.getOpen(), first.getHigh(), first.getLow(), last.getClose(), 0);
+        for (PriceBar bar : bars) {
+            summary.setHigh(Math.max(summary.getHigh(), bar.getHigh()));
+            summary.setLow(Math.min(summary.getLow(), bar.getLow()));
+            summary.setVolume(summary.getVolume() + bar.getVolume());
+        }
+        return Optional.of(summary);
     }
 
 }
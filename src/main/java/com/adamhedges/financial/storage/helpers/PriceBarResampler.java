@@ -0,0 +1,110 @@
+package com.adamhedges.financial.storage.helpers;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+
+import java.util.function.Consumer;
+
+// aggregates one-minute bars into bars of intervalMinutes, labelled with the start time of their interval;
+// a bar is emitted once its last minute arrives, once a later interval starts, or on flush
+public class PriceBarResampler {
+
+    public static final int DAILY = 24 * 60;
+
+    private final String symbol;
+    private final int intervalMinutes;
+    private final int anchorMinute;
+    private final Consumer<PriceBar> sink;
+
+    private boolean pending = false;
+    private long date;
+    private int start;
+    private double open;
+    private double high;
+    private double low;
+    private double close;
+    private long volume;
+
+    public PriceBarResampler(String symbol, int intervalMinutes, Consumer<PriceBar> sink) {
+        this(symbol, intervalMinutes, 0, sink);
+    }
+
+    // intervals are aligned to anchorTime (HHMM), so 60 minutes anchored at 930 gives 9:30, 10:30, ...
+    public PriceBarResampler(String symbol, int intervalMinutes, int anchorTime, Consumer<PriceBar> sink) {
+        if (intervalMinutes <= 0) {
+            throw new IllegalArgumentException("Resampling interval must be positive");
+        }
+
+        this.symbol = symbol;
+        this.intervalMinutes = intervalMinutes;
+        this.anchorMinute = toMinutes(anchorTime);
+        this.sink = sink;
+    }
+
+    public void add(PriceBar bar) {
+        add(bar.getDate(), bar.getTime(), bar.getOpen(), bar.getHigh(), bar.getLow(), bar.getClose(), bar.getVolume());
+    }
+
+    public void add(PriceBarColumns columns, int i) {
+        add(columns.getDates()[i], columns.getTimes()[i], columns.getOpens()[i], columns.getHighs()[i],
+                columns.getLows()[i], columns.getCloses()[i], columns.getVolumes()[i]);
+    }
+
+    public void add(long date, int time, double open, double high, double low, double close, long volume) {
+        int minute = toMinutes(time);
+        int start = anchorMinute + Math.floorDiv(minute - anchorMinute, intervalMinutes) * intervalMinutes;
+
+        if (pending && (date != this.date || start != this.start)) {
+            flush();
+        }
+
+        if (!pending) {
+            this.pending = true;
+            this.date = date;
+            this.start = start;
+            this.open = open;
+            this.high = high;
+            this.low = low;
+            this.volume = 0;
+        } else {
+            this.high = Math.max(this.high, high);
+            this.low = Math.min(this.low, low);
+        }
+
+        this.close = close;
+        this.volume += volume;
+
+        if (minute + 1 == start + intervalMinutes) {
+            flush();
+        }
+    }
+
+    // emits the interval in progress, if any, even though it may be incomplete
+    public void flush() {
+        if (!pending) {
+            return;
+        }
+
+        PriceBar bar = new PriceBar(symbol, date, toTime(Math.max(start, 0)));
+        bar.setOpen(open);
+        bar.setHigh(high);
+        bar.setLow(low);
+        bar.setClose(close);
+        bar.setVolume(volume);
+
+        pending = false;
+        sink.accept(bar);
+    }
+
+    public void clear() {
+        pending = false;
+    }
+
+    private static int toMinutes(int time) {
+        return (time / 100) * 60 + time % 100;
+    }
+
+    private static int toTime(int minutes) {
+        return (minutes / 60) * 100 + minutes % 60;
+    }
+
+}
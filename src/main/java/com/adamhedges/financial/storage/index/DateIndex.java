@@ -1,21 +1,38 @@
 package com.adamhedges.financial.storage.index;
 
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 public class DateIndex extends TreeMap<Long, IndexNode> {
 
     private boolean isDirty = false;
+    private final Set<Long> dirtyDates = new TreeSet<>();
 
     public void setDirty() {
         this.isDirty = true;
     }
 
+    public void setDirty(long date) {
+        this.dirtyDates.add(date);
+    }
+
     public void setClean() {
         this.isDirty = false;
+        this.dirtyDates.clear();
     }
 
     public boolean isDirty() {
-        return this.isDirty;
+        return this.isDirty || !this.dirtyDates.isEmpty();
+    }
+
+    // true when only individual nodes changed, so they can be journaled instead of rewriting the whole index
+    public boolean isPartiallyDirty() {
+        return !this.isDirty && !this.dirtyDates.isEmpty();
+    }
+
+    public Set<Long> getDirtyDates() {
+        return this.dirtyDates;
     }
 
 }
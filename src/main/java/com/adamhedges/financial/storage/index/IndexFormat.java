@@ -0,0 +1,126 @@
+package com.adamhedges.financial.storage.index;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public enum IndexFormat {
+
+    CSV("csv") {
+        @Override
+        public List<IndexNode> read(Path path) throws IOException {
+            List<IndexNode> nodes = new ArrayList<>();
+            for (String line : Files.readAllLines(path)) {
+                nodes.add(IndexNode.fromCsv(line));
+            }
+            return nodes;
+        }
+
+        // a crash can tear the last journal line, which ends the replay
+        @Override
+        public List<IndexNode> readJournal(Path path) throws IOException {
+            List<IndexNode> nodes = new ArrayList<>();
+            for (String line : Files.readAllLines(path)) {
+                try {
+                    nodes.add(IndexNode.fromCsv(line));
+                } catch (RuntimeException ex) {
+                    break;
+                }
+            }
+            return nodes;
+        }
+
+        @Override
+        public void write(Path path, Collection<IndexNode> nodes) throws IOException {
+            try (FileWriter writer = new FileWriter(path.toFile(), false)) {
+                for (IndexNode node : nodes) {
+                    if (node.getCount() > 0) {
+                        writer.write(String.format("%s%n", node.toCsv()));
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void append(Path path, Collection<IndexNode> nodes) throws IOException {
+            try (FileWriter writer = new FileWriter(path.toFile(), true)) {
+                for (IndexNode node : nodes) {
+                    writer.write(String.format("%s%n", node.toCsv()));
+                }
+            }
+        }
+    },
+
+    // fixed-width little-endian entries of date, offset and count, sorted by date
+    BINARY("idx") {
+        @Override
+        public List<IndexNode> read(Path path) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+            int n = buffer.limit() / IndexNode.BINARY_SIZE_BYTES;
+            List<IndexNode> nodes = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                nodes.add(IndexNode.fromBinary(buffer, i * IndexNode.BINARY_SIZE_BYTES));
+            }
+            return nodes;
+        }
+
+        @Override
+        public void write(Path path, Collection<IndexNode> nodes) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(nodes.size() * IndexNode.BINARY_SIZE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (IndexNode node : nodes) {
+                if (node.getCount() > 0) {
+                    node.toBinary(buffer);
+                }
+            }
+            buffer.flip();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+
+        @Override
+        public void append(Path path, Collection<IndexNode> nodes) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(nodes.size() * IndexNode.BINARY_SIZE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            nodes.forEach(node -> node.toBinary(buffer));
+            buffer.flip();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    };
+
+    private final String extension;
+
+    IndexFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public abstract List<IndexNode> read(Path path) throws IOException;
+
+    // reads the entries of a journal up to the first torn one; a partial fixed-width entry is already dropped by read
+    public List<IndexNode> readJournal(Path path) throws IOException {
+        return read(path);
+    }
+
+    public abstract void write(Path path, Collection<IndexNode> nodes) throws IOException;
+
+    // unlike write, appends empty nodes too so that a journal can record deletions
+    public abstract void append(Path path, Collection<IndexNode> nodes) throws IOException;
+
+}
@@ -4,11 +4,15 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.nio.ByteBuffer;
+
 @AllArgsConstructor
 @Data
 @NoArgsConstructor
 public class IndexNode {
 
+    public static final int BINARY_SIZE_BYTES = 20;
+
     private long date;
     private long offset;
     private int count;
@@ -26,6 +30,20 @@ public class IndexNode {
         return String.format("%s,%s,%s", date, offset, count);
     }
 
+    public static IndexNode fromBinary(ByteBuffer buffer, int position) {
+        IndexNode node = new IndexNode();
+        node.date = buffer.getLong(position);
+        node.offset = buffer.getLong(position + 8);
+        node.count = buffer.getInt(position + 16);
+        return node;
+    }
+
+    public void toBinary(ByteBuffer buffer) {
+        buffer.putLong(date);
+        buffer.putLong(offset);
+        buffer.putInt(count);
+    }
+
     public boolean isAfter(IndexNode other) {
         return this.date > other.date;
     }
@@ -0,0 +1,115 @@
+package com.adamhedges.financial.storage.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Optional;
+
+// read-only view over a binary index file that answers lookups by binary search without building a DateIndex
+// nodes journaled since the last checkpoint overlay the file, an empty one marking a removed date
+public class MappedIndex {
+
+    private final ByteBuffer entries;
+    private final DateIndex overlay;
+
+    public MappedIndex(String filepath) throws IOException {
+        this(filepath, new DateIndex());
+    }
+
+    public MappedIndex(String filepath, DateIndex journaled) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        overlay = journaled;
+    }
+
+    public int size() {
+        return entries.limit() / IndexNode.BINARY_SIZE_BYTES;
+    }
+
+    public IndexNode get(int i) {
+        return IndexNode.fromBinary(entries, i * IndexNode.BINARY_SIZE_BYTES);
+    }
+
+    public long getDate(int i) {
+        return entries.getLong(i * IndexNode.BINARY_SIZE_BYTES);
+    }
+
+    // same contract as Arrays.binarySearch
+    public int search(long date) {
+        int lo = 0;
+        int hi = size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long middate = getDate(mid);
+            if (middate < date) {
+                lo = mid + 1;
+            } else if (middate > date) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    public Optional<IndexNode> lookup(long date) {
+        IndexNode journaled = overlay.get(date);
+        if (journaled != null) {
+            return journaled.getCount() > 0 ? Optional.of(journaled) : Optional.empty();
+        }
+
+        int i = search(date);
+        return i < 0 ? Optional.empty() : Optional.of(get(i));
+    }
+
+    public Optional<IndexNode> first() {
+        return next(Long.MIN_VALUE);
+    }
+
+    public Optional<IndexNode> last() {
+        return prev(Long.MAX_VALUE);
+    }
+
+    public Optional<IndexNode> prev(long date) {
+        // the nearest file node the journal does not shadow against the nearest live journaled node
+        int i = search(date);
+        int prev = i < 0 ? -(i + 1) - 1 : i - 1;
+        while (prev >= 0 && overlay.containsKey(getDate(prev))) {
+            prev--;
+        }
+
+        Map.Entry<Long, IndexNode> journaled = overlay.lowerEntry(date);
+        while (journaled != null && journaled.getValue().getCount() == 0) {
+            journaled = overlay.lowerEntry(journaled.getKey());
+        }
+
+        if (journaled != null && (prev < 0 || journaled.getKey() > getDate(prev))) {
+            return Optional.of(journaled.getValue());
+        }
+        return prev < 0 ? Optional.empty() : Optional.of(get(prev));
+    }
+
+    public Optional<IndexNode> next(long date) {
+        int i = search(date);
+        int next = i < 0 ? -(i + 1) : i + 1;
+        while (next < size() && overlay.containsKey(getDate(next))) {
+            next++;
+        }
+
+        Map.Entry<Long, IndexNode> journaled = overlay.higherEntry(date);
+        while (journaled != null && journaled.getValue().getCount() == 0) {
+            journaled = overlay.higherEntry(journaled.getKey());
+        }
+
+        if (journaled != null && (next >= size() || journaled.getKey() < getDate(next))) {
+            return Optional.of(journaled.getValue());
+        }
+        return next >= size() ? Optional.empty() : Optional.of(get(next));
+    }
+
+}
@@ -2,108 +2,354 @@ package com.adamhedges.financial.storage.index;
 
 import com.adamhedges.financial.storage.DataAdapter;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 
-public class SymbolIndex<T extends Comparable<T>> extends HashMap<String, DateIndex> {
+public class SymbolIndex<T extends Comparable<T>> extends ConcurrentHashMap<String, DateIndex> {
 
     private final DataAdapter<T> adapter;
+    private final IndexFormat format;
+    private final int journalCheckpointEntries;
+    private final int maxResidentSymbols;
+    private final Function<String, Lock> evictionLocks;
+
+    private final Map<String, Integer> journalSizes = new ConcurrentHashMap<>();
+    private final Map<String, MappedIndex> mapped = new ConcurrentHashMap<>();
+    // the access clock value of each resident symbol's last use, so recency is tracked without a shared monitor
+    private final Map<String, Long> recent = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
 
     public SymbolIndex(DataAdapter<T> dataAdapter) {
-        adapter = dataAdapter;
+        this(dataAdapter, IndexFormat.CSV, 0);
+    }
+
+    public SymbolIndex(DataAdapter<T> dataAdapter, IndexFormat indexFormat) {
+        this(dataAdapter, indexFormat, 0);
+    }
+
+    public SymbolIndex(DataAdapter<T> dataAdapter, IndexFormat indexFormat, int journalCheckpointEntries) {
+        this(dataAdapter, indexFormat, journalCheckpointEntries, 0, symbol -> null);
+    }
+
+    // keeps at most maxResidentSymbols indexes loaded (0 for no limit), evicting the least recently used;
+    // a symbol is only evicted when the lock from evictionLocks can be taken without waiting, or when it is null
+    public SymbolIndex(DataAdapter<T> dataAdapter, IndexFormat indexFormat, int journalCheckpointEntries, int maxResidentSymbols, Function<String, Lock> evictionLocks) {
+        this.adapter = dataAdapter;
+        this.format = indexFormat;
+        this.journalCheckpointEntries = journalCheckpointEntries;
+        this.maxResidentSymbols = maxResidentSymbols;
+        this.evictionLocks = evictionLocks;
+    }
+
+    public String getIndexFilePath(String symbol) {
+        return adapter.getIndexFilePath(symbol, format.getExtension());
+    }
+
+    public String getJournalFilePath(String symbol) {
+        return adapter.getIndexFilePath(symbol, String.format("%s.journal", format.getExtension()));
+    }
+
+    // a complete checkpoint that supersedes the journal until it is moved over the index file
+    public String getCheckpointFilePath(String symbol) {
+        return adapter.getIndexFilePath(symbol, String.format("%s.checkpoint", format.getExtension()));
     }
 
     public void load(String symbol) {
-        if (this.containsKey(symbol)) {
-            return;
+        resolve(symbol);
+    }
+
+    // loads the symbol and returns its index, or null if another thread evicted it in the meantime
+    private DateIndex resolve(String symbol) {
+        if (maxResidentSymbols > 0) {
+            recent.put(symbol, clock.incrementAndGet());
+        }
+
+        DateIndex dateIndex = this.get(symbol);
+        if (dateIndex != null) {
+            return dateIndex;
+        }
+
+        dateIndex = this.computeIfAbsent(symbol, this::read);
+
+        if (maxResidentSymbols > 0 && this.size() > maxResidentSymbols) {
+            evictLeastRecent(symbol);
+        }
+
+        return dateIndex;
+    }
+
+    private void evictLeastRecent(String loaded) {
+        // oldest access first, from a snapshot that concurrent loads may already have moved on from
+        List<Map.Entry<String, Long>> accessed = new ArrayList<>(recent.entrySet());
+        accessed.sort(Map.Entry.comparingByValue());
+
+        // symbols in use by another thread are skipped and left for a later load
+        for (Map.Entry<String, Long> entry : accessed) {
+            String candidate = entry.getKey();
+            if (this.size() <= maxResidentSymbols) {
+                break;
+            }
+
+            if (candidate.equals(loaded)) {
+                continue;
+            }
+
+            Lock lock = evictionLocks.apply(candidate);
+            if (lock != null && !lock.tryLock()) {
+                continue;
+            }
+
+            try {
+                evict(candidate);
+            } finally {
+                if (lock != null) {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    // persists the symbol's index if it has unsaved changes and unloads it; an index that fails to persist stays loaded
+    public boolean evict(String symbol) {
+        persist(symbol);
+
+        DateIndex dateIndex = this.get(symbol);
+        if (dateIndex != null && dateIndex.isDirty()) {
+            return false;
+        }
+
+        this.remove(symbol);
+        mapped.remove(symbol);
+        journalSizes.remove(symbol);
+        recent.remove(symbol);
+        return true;
+    }
+
+    // binary index files answer lookups through a mapping, overlaid with their journal, until a write loads the symbol
+    // the loaded index then answers instead, since it holds any unsaved changes; returns null when the file cannot be mapped
+    private MappedIndex getMapped(String symbol) {
+        if (format != IndexFormat.BINARY || this.containsKey(symbol)) {
+            return null;
+        }
+
+        return mapped.computeIfAbsent(symbol, this::map);
+    }
+
+    private MappedIndex map(String symbol) {
+        // a legacy index to convert or a checkpoint to complete is left to load
+        Path filepath = Paths.get(getIndexFilePath(symbol));
+        if (!Files.exists(filepath) || Files.exists(Paths.get(getCheckpointFilePath(symbol)))) {
+            return null;
         }
 
-        this.put(symbol, new DateIndex());
+        try {
+            DateIndex journaled = new DateIndex();
+            Path journalpath = Paths.get(getJournalFilePath(symbol));
+            if (Files.exists(journalpath)) {
+                format.readJournal(journalpath).forEach(node -> journaled.put(node.getDate(), node));
+            }
+            return new MappedIndex(filepath.toString(), journaled);
+        } catch (IOException ioex) {
+            return null;
+        }
+    }
+
+    private DateIndex read(String symbol) {
+        // the loaded index supersedes any mapping, which would go stale once the index is persisted
+        mapped.remove(symbol);
+        DateIndex dateIndex = new DateIndex();
 
         try {
-            String filepath = adapter.getIndexFilePath(symbol);
-            List<String> indexLines = Files.readAllLines(Paths.get(filepath));
-            for (String line : indexLines) {
-                IndexNode node = IndexNode.fromCsv(line);
-                this.get(symbol).put(node.getDate(), node);
+            completeCheckpoint(symbol);
+        } catch (IOException ioex) {
+            System.out.printf("Unable to complete %s index checkpoint: %s%n", symbol, ioex.getMessage());
+        }
+
+        try {
+            Path filepath = Paths.get(getIndexFilePath(symbol));
+            Path csvpath = Paths.get(adapter.getIndexFilePath(symbol, IndexFormat.CSV.getExtension()));
+            if (!Files.exists(filepath) && Files.exists(csvpath)) {
+                // convert the legacy index the first time it is loaded
+                IndexFormat.CSV.read(csvpath).forEach(node -> dateIndex.put(node.getDate(), node));
+                format.write(filepath, dateIndex.values());
+            } else {
+                format.read(filepath).forEach(node -> dateIndex.put(node.getDate(), node));
             }
         } catch (IOException ignored) { }
+
+        // replay node changes journaled since the last checkpoint
+        int journalsize = 0;
+        try {
+            Path journalpath = Paths.get(getJournalFilePath(symbol));
+            if (Files.exists(journalpath)) {
+                for (IndexNode node : format.readJournal(journalpath)) {
+                    if (node.getCount() > 0) {
+                        dateIndex.put(node.getDate(), node);
+                    } else {
+                        dateIndex.remove(node.getDate());
+                    }
+                    journalsize++;
+                }
+            }
+        } catch (IOException ioex) {
+            System.out.printf("Unable to replay %s index journal: %s%n", symbol, ioex.getMessage());
+        }
+
+        journalSizes.put(symbol, journalsize);
+        return dateIndex;
+    }
+
+    // converts every CSV index in the index directory to this index's format, returning the number converted
+    public int convert() throws IOException {
+        if (format == IndexFormat.CSV) {
+            return 0;
+        }
+
+        int n = 0;
+        String extension = String.format(".%s", IndexFormat.CSV.getExtension());
+        try (DirectoryStream<Path> csvpaths = Files.newDirectoryStream(Paths.get(adapter.getIndexPath()), String.format("*%s", extension))) {
+            for (Path csvpath : csvpaths) {
+                String filename = csvpath.getFileName().toString();
+                String symbol = filename.substring(0, filename.length() - extension.length());
+                format.write(Paths.get(getIndexFilePath(symbol)), IndexFormat.CSV.read(csvpath));
+                mapped.remove(symbol);
+                n++;
+            }
+        }
+
+        return n;
     }
 
     public void persist() {
-        for (Entry<String, DateIndex> entry : this.entrySet()) {
-            String symbol = entry.getKey();
-            DateIndex dateIndex = entry.getValue();
-            if (dateIndex.isDirty()) {
-                String filepath = adapter.getIndexFilePath(symbol);
-                try (FileWriter writer = new FileWriter(filepath, false)) {
-                    for (IndexNode node : dateIndex.values()) {
-                        if (node.getCount() > 0) {
-                            writer.write(String.format("%s%n", node.toCsv()));
-                        }
-                    }
-                    dateIndex.setClean();
-                } catch (IOException ioex) {
-                    System.out.printf("Unable to write %s index file: %s%n", symbol, ioex.getMessage());
+        for (String symbol : this.keySet()) {
+            persist(symbol);
+        }
+    }
+
+    public void persist(String symbol) {
+        DateIndex dateIndex = this.get(symbol);
+        if (dateIndex == null || !dateIndex.isDirty()) {
+            return;
+        }
+
+        try {
+            int journalsize = journalSizes.getOrDefault(symbol, 0);
+            Path journalpath = Paths.get(getJournalFilePath(symbol));
+
+            if (dateIndex.isPartiallyDirty() && journalsize + dateIndex.getDirtyDates().size() <= journalCheckpointEntries) {
+                // journal just the changed nodes, recording removed ones as empty
+                List<IndexNode> nodes = new ArrayList<>();
+                for (long date : dateIndex.getDirtyDates()) {
+                    IndexNode node = dateIndex.get(date);
+                    nodes.add(node == null ? new IndexNode(date, 0, 0) : node);
                 }
+                format.append(journalpath, nodes);
+                journalSizes.put(symbol, journalsize + nodes.size());
+            } else {
+                // checkpoint the full index; once the checkpoint file is complete the journal is obsolete
+                Path temppath = Paths.get(String.format("%s.tmp", getCheckpointFilePath(symbol)));
+                format.write(temppath, dateIndex.values());
+                Files.move(temppath, Paths.get(getCheckpointFilePath(symbol)), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                completeCheckpoint(symbol);
+                journalSizes.put(symbol, 0);
             }
+
+            dateIndex.setClean();
+        } catch (IOException ioex) {
+            System.out.printf("Unable to write %s index file: %s%n", symbol, ioex.getMessage());
         }
     }
 
-    public Optional<IndexNode> lookup(String symbol, Long date) {
-        load(symbol);
-        if (!this.containsKey(symbol)) {
-            return Optional.empty();
+    // drops the journal and then moves a complete checkpoint over the index file
+    // a crash at any point leaves either the old index and its journal or the checkpoint, which load completes
+    private void completeCheckpoint(String symbol) throws IOException {
+        Path checkpointpath = Paths.get(getCheckpointFilePath(symbol));
+        Files.deleteIfExists(Paths.get(String.format("%s.tmp", checkpointpath)));
+        if (Files.exists(checkpointpath)) {
+            Files.deleteIfExists(Paths.get(getJournalFilePath(symbol)));
+            Files.move(checkpointpath, Paths.get(getIndexFilePath(symbol)), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
         }
+    }
 
-        if (!this.get(symbol).containsKey(date)) {
-            return Optional.empty();
+    // swaps in a complete index for the symbol, such as one rebuilt from its data file, and discards its journal
+    public void reset(String symbol, DateIndex dateIndex) throws IOException {
+        Files.deleteIfExists(Paths.get(getJournalFilePath(symbol)));
+        journalSizes.put(symbol, 0);
+
+        dateIndex.setDirty();
+        this.put(symbol, dateIndex);
+        mapped.remove(symbol);
+        if (maxResidentSymbols > 0) {
+            recent.put(symbol, clock.incrementAndGet());
         }
 
-        return Optional.of(this.get(symbol).get(date));
+        persist(symbol);
+    }
+
+    public Optional<IndexNode> lookup(String symbol, Long date) {
+        MappedIndex mappedIndex = getMapped(symbol);
+        if (mappedIndex != null) {
+            return mappedIndex.lookup(date);
+        }
+
+        DateIndex dateIndex = resolve(symbol);
+        return dateIndex == null ? Optional.empty() : Optional.ofNullable(dateIndex.get(date));
     }
 
     public Optional<IndexNode> first(String symbol) {
-        load(symbol);
-        if (!this.containsKey(symbol) || this.get(symbol).isEmpty()) {
-            return Optional.empty();
+        MappedIndex mappedIndex = getMapped(symbol);
+        if (mappedIndex != null) {
+            return mappedIndex.first();
         }
 
-        return Optional.of(this.get(symbol).firstEntry().getValue());
+        DateIndex dateIndex = resolve(symbol);
+        return dateIndex == null ? Optional.empty() : value(dateIndex.firstEntry());
     }
 
     public Optional<IndexNode> last(String symbol) {
-        load(symbol);
-        if (!this.containsKey(symbol) || this.get(symbol).isEmpty()) {
-            return Optional.empty();
+        MappedIndex mappedIndex = getMapped(symbol);
+        if (mappedIndex != null) {
+            return mappedIndex.last();
         }
 
-        return Optional.of(this.get(symbol).lastEntry().getValue());
+        DateIndex dateIndex = resolve(symbol);
+        return dateIndex == null ? Optional.empty() : value(dateIndex.lastEntry());
     }
 
     public Optional<IndexNode> prev(String symbol, long date) {
-        load(symbol);
-        if (!this.containsKey(symbol) || this.get(symbol).isEmpty()) {
-            return Optional.empty();
+        MappedIndex mappedIndex = getMapped(symbol);
+        if (mappedIndex != null) {
+            return mappedIndex.prev(date);
         }
 
-        Long nullableDateKey = this.get(symbol).lowerKey(date);
-        return nullableDateKey == null ? Optional.empty() : Optional.of(this.get(symbol).get(nullableDateKey));
+        DateIndex dateIndex = resolve(symbol);
+        return dateIndex == null ? Optional.empty() : value(dateIndex.lowerEntry(date));
     }
 
     public Optional<IndexNode> next(String symbol, long date) {
-        load(symbol);
-        if (!this.containsKey(symbol) || this.get(symbol).isEmpty()) {
-            return Optional.empty();
+        MappedIndex mappedIndex = getMapped(symbol);
+        if (mappedIndex != null) {
+            return mappedIndex.next(date);
         }
 
-        Long nullableDateKey = this.get(symbol).higherKey(date);
-        return nullableDateKey == null ? Optional.empty() : Optional.of(this.get(symbol).get(nullableDateKey));
+        DateIndex dateIndex = resolve(symbol);
+        return dateIndex == null ? Optional.empty() : value(dateIndex.higherEntry(date));
+    }
+
+    private static Optional<IndexNode> value(Map.Entry<Long, IndexNode> entry) {
+        return entry == null ? Optional.empty() : Optional.of(entry.getValue());
     }
 
 }
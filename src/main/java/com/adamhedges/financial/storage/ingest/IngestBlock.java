@@ -0,0 +1,16 @@
+package com.adamhedges.financial.storage.ingest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Data
+public class IngestBlock<T> {
+
+    private String symbol;
+    private long date;
+    private List<T> items;
+
+}
@@ -0,0 +1,77 @@
+package com.adamhedges.financial.storage.ingest;
+
+import com.adamhedges.financial.storage.FileStore;
+import com.adamhedges.financial.storage.WorkerPool;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+// fans writes for many symbols out over an executor, one writeBatch per symbol
+public class IngestEngine<T extends Comparable<T>> implements AutoCloseable {
+
+    private final FileStore<T> fileStore;
+    private final WorkerPool workers;
+
+    public IngestEngine(FileStore<T> fileStore, int parallelism) {
+        this.fileStore = fileStore;
+        this.workers = new WorkerPool("ingest", parallelism);
+    }
+
+    // the executor stays owned by the caller, e.g. Executors.newVirtualThreadPerTaskExecutor()
+    public IngestEngine(FileStore<T> fileStore, ExecutorService executor) {
+        this.fileStore = fileStore;
+        this.workers = new WorkerPool(executor);
+    }
+
+    public IngestResult ingest(long date, Map<String, List<T>> items) throws InterruptedException {
+        Map<String, Map<Long, List<T>>> batches = new HashMap<>();
+        items.forEach((symbol, symbolItems) -> batches.put(symbol, Map.of(date, symbolItems)));
+        return ingestBatches(batches);
+    }
+
+    // later blocks for the same symbol and date replace earlier ones, as with FileStore.write
+    public IngestResult ingest(Stream<IngestBlock<T>> blocks) throws InterruptedException {
+        Map<String, Map<Long, List<T>>> batches = new HashMap<>();
+        blocks.forEach(block -> batches.computeIfAbsent(block.getSymbol(), s -> new HashMap<>()).put(block.getDate(), block.getItems()));
+        return ingestBatches(batches);
+    }
+
+    public IngestResult ingestBatches(Map<String, Map<Long, List<T>>> batches) throws InterruptedException {
+        IngestResult result = new IngestResult();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (Map.Entry<String, Map<Long, List<T>>> batch : batches.entrySet()) {
+            String symbol = batch.getKey();
+            futures.add(workers.submit(() -> {
+                try {
+                    fileStore.writeBatch(symbol, batch.getValue());
+                    result.getWritten().put(symbol, batch.getValue().values().stream().mapToInt(List::size).sum());
+                } catch (Exception ex) {
+                    result.getFailures().put(symbol, ex);
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ignored) {
+                // failures are recorded by the task itself
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void close() {
+        workers.close();
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.adamhedges.financial.storage.ingest;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Getter
+public class IngestResult {
+
+    // records written per symbol
+    private final Map<String, Integer> written = new ConcurrentHashMap<>();
+    private final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+
+}
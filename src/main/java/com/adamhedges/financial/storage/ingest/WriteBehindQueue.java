@@ -0,0 +1,208 @@
+package com.adamhedges.financial.storage.ingest;
+
+import com.adamhedges.financial.storage.FileStore;
+import com.adamhedges.financial.storage.WorkerPool;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// takes day writes off the caller's thread and applies them in the background, one writeBatch per symbol per flush
+// write never blocks: a day already queued is replaced in place, and a new day is refused once the queue is full
+public class WriteBehindQueue<T extends Comparable<T>> implements AutoCloseable {
+
+    private final FileStore<T> fileStore;
+    private final WorkerPool workers;
+    private final int maxPendingDays;
+
+    private final Map<String, SymbolQueue<T>> queues = new ConcurrentHashMap<>();
+    private final Set<CompletableFuture<Void>> outstanding = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger pendingDays = new AtomicInteger();
+    private final AtomicLong mergedWrites = new AtomicLong();
+    private final AtomicLong rejectedWrites = new AtomicLong();
+    private final AtomicLong flushedBatches = new AtomicLong();
+
+    public WriteBehindQueue(FileStore<T> fileStore, int parallelism, int maxPendingDays) {
+        this.fileStore = fileStore;
+        this.workers = new WorkerPool("writebehind", parallelism);
+        this.maxPendingDays = maxPendingDays;
+    }
+
+    // the executor stays owned by the caller
+    public WriteBehindQueue(FileStore<T> fileStore, ExecutorService executor, int maxPendingDays) {
+        this.fileStore = fileStore;
+        this.workers = new WorkerPool(executor);
+        this.maxPendingDays = maxPendingDays;
+    }
+
+    // the queue owns items until the returned future completes; a later write of the same day that arrives
+    // before this one is flushed replaces it and shares its future
+    public CompletableFuture<Void> write(String symbol, long date, List<T> items) {
+        SymbolQueue<T> queue = queues.computeIfAbsent(symbol, s -> new SymbolQueue<>());
+        PendingDay<T> queued;
+        TreeMap<Long, PendingDay<T>> refused = new TreeMap<>();
+        synchronized (queue) {
+            PendingDay<T> day = queue.days.get(date);
+            if (day != null) {
+                day.items = items;
+                mergedWrites.incrementAndGet();
+                return day.future;
+            }
+
+            if (!reserve()) {
+                rejectedWrites.incrementAndGet();
+                return CompletableFuture.failedFuture(new RejectedExecutionException(
+                        String.format("Write-behind queue is full with %s pending days", maxPendingDays)));
+            }
+
+            queued = new PendingDay<>(items);
+            queue.days.put(date, queued);
+            outstanding.add(queued.future);
+            PendingDay<T> added = queued;
+            queued.future.whenComplete((result, ex) -> outstanding.remove(added.future));
+
+            if (!queue.scheduled) {
+                refused = schedule(symbol, queue);
+            }
+        }
+
+        fail(symbol, refused);
+        return queued.future;
+    }
+
+    // completes once every write queued so far has been applied, whether or not it succeeded
+    public CompletableFuture<Void> flush() {
+        CompletableFuture<?>[] futures = outstanding.stream()
+                .map(future -> future.exceptionally(ex -> null))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures);
+    }
+
+    private boolean reserve() {
+        while (true) {
+            int pending = pendingDays.get();
+            if (pending >= maxPendingDays) {
+                return false;
+            }
+            if (pendingDays.compareAndSet(pending, pending + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // writes everything queued for the symbol in one batch, then yields the thread to other symbols
+    private void drain(String symbol, SymbolQueue<T> queue) {
+        TreeMap<Long, PendingDay<T>> batch;
+        synchronized (queue) {
+            batch = queue.days;
+            queue.days = new TreeMap<>();
+        }
+
+        Exception failure = null;
+        try {
+            Map<Long, List<T>> days = new TreeMap<>();
+            batch.forEach((date, day) -> days.put(date, day.items));
+            fileStore.writeBatch(symbol, days);
+            flushedBatches.incrementAndGet();
+        } catch (Exception ex) {
+            failure = ex;
+        }
+
+        // release the capacity before completing so that a caller woken by its future can queue again at once
+        pendingDays.addAndGet(-batch.size());
+        for (PendingDay<T> day : batch.values()) {
+            if (failure == null) {
+                day.future.complete(null);
+            } else {
+                day.future.completeExceptionally(failure);
+            }
+        }
+
+        TreeMap<Long, PendingDay<T>> refused = new TreeMap<>();
+        synchronized (queue) {
+            if (queue.days.isEmpty()) {
+                queue.scheduled = false;
+            } else {
+                refused = schedule(symbol, queue);
+            }
+        }
+        fail(symbol, refused);
+    }
+
+    // called holding the queue's lock; if the executor refuses the drain, e.g. after it was shut down, the symbol's queued
+    // days are taken back out and their capacity released so that the queue can be scheduled again, and they are returned
+    // for the caller to fail once the lock is released
+    private TreeMap<Long, PendingDay<T>> schedule(String symbol, SymbolQueue<T> queue) {
+        // marked before execute, since an executor may run the drain on this thread
+        queue.scheduled = true;
+        try {
+            workers.execute(() -> drain(symbol, queue));
+            return new TreeMap<>();
+        } catch (RejectedExecutionException ex) {
+            TreeMap<Long, PendingDay<T>> refused = queue.days;
+            queue.days = new TreeMap<>();
+            queue.scheduled = false;
+            pendingDays.addAndGet(-refused.size());
+            return refused;
+        }
+    }
+
+    private void fail(String symbol, TreeMap<Long, PendingDay<T>> refused) {
+        if (refused.isEmpty()) {
+            return;
+        }
+
+        rejectedWrites.addAndGet(refused.size());
+        RejectedExecutionException failure = new RejectedExecutionException(String.format("Write-behind executor refused to write %s", symbol));
+        refused.values().forEach(day -> day.future.completeExceptionally(failure));
+    }
+
+    public int getPendingDays() {
+        return pendingDays.get();
+    }
+
+    public long getMergedWrites() {
+        return mergedWrites.get();
+    }
+
+    public long getRejectedWrites() {
+        return rejectedWrites.get();
+    }
+
+    public long getFlushedBatches() {
+        return flushedBatches.get();
+    }
+
+    // applies whatever is still queued before shutting down an owned executor
+    @Override
+    public void close() {
+        flush().join();
+        workers.close();
+    }
+
+    private static class SymbolQueue<T> {
+
+        private TreeMap<Long, PendingDay<T>> days = new TreeMap<>();
+        private boolean scheduled = false;
+
+    }
+
+    private static class PendingDay<T> {
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private List<T> items;
+
+        private PendingDay(List<T> items) {
+            this.items = items;
+        }
+
+    }
+
+}
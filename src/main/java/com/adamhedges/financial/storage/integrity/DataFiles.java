@@ -0,0 +1,31 @@
+package com.adamhedges.financial.storage.integrity;
+
+import com.adamhedges.financial.storage.DataAdapter;
+import com.adamhedges.financial.storage.FileStore;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+class DataFiles {
+
+    // symbols with a data file in the adapter's data directory; compaction output is skipped, while dotted tickers such as BRK.B are kept
+    static List<String> symbols(DataAdapter<?> adapter) throws IOException {
+        String compactsuffix = String.format(".%s", FileStore.COMPACT_EXTENSION);
+        List<String> symbols = new ArrayList<>();
+        try (DirectoryStream<Path> datapaths = Files.newDirectoryStream(Paths.get(adapter.getDataPath()))) {
+            for (Path datapath : datapaths) {
+                String filename = datapath.getFileName().toString();
+                if (Files.isRegularFile(datapath) && !filename.endsWith(compactsuffix)) {
+                    symbols.add(filename);
+                }
+            }
+        }
+        return symbols;
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.adamhedges.financial.storage.integrity;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Getter
+public class IndexRebuildResult {
+
+    // days indexed per rebuilt symbol
+    private final Map<String, Integer> rebuilt = new ConcurrentHashMap<>();
+    private final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+
+}
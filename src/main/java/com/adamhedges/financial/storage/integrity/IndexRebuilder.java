@@ -0,0 +1,66 @@
+package com.adamhedges.financial.storage.integrity;
+
+import com.adamhedges.financial.storage.FileStore;
+import com.adamhedges.financial.storage.WorkerPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// runs FileStore.rebuildIndex for many symbols over an executor
+public class IndexRebuilder<T extends Comparable<T>> implements AutoCloseable {
+
+    private final FileStore<T> fileStore;
+    private final WorkerPool workers;
+
+    public IndexRebuilder(FileStore<T> fileStore, int parallelism) {
+        this.fileStore = fileStore;
+        this.workers = new WorkerPool("rebuild", parallelism);
+    }
+
+    // the executor stays owned by the caller
+    public IndexRebuilder(FileStore<T> fileStore, ExecutorService executor) {
+        this.fileStore = fileStore;
+        this.workers = new WorkerPool(executor);
+    }
+
+    // every data file in the adapter's data directory
+    public IndexRebuildResult rebuildAll() throws IOException, InterruptedException {
+        return rebuild(DataFiles.symbols(fileStore.adapter));
+    }
+
+    public IndexRebuildResult rebuild(Collection<String> symbols) throws InterruptedException {
+        IndexRebuildResult result = new IndexRebuildResult();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (String symbol : symbols) {
+            futures.add(workers.submit(() -> {
+                try {
+                    result.getRebuilt().put(symbol, fileStore.rebuildIndex(symbol).size());
+                } catch (Exception ex) {
+                    result.getFailures().put(symbol, ex);
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ignored) {
+                // failures are recorded by the task itself
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void close() {
+        workers.close();
+    }
+
+}
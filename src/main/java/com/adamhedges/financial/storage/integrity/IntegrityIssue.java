@@ -0,0 +1,38 @@
+package com.adamhedges.financial.storage.integrity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// one problem found by FileStore.verifyIntegrity; date is 0 for byte ranges that belong to no day
+@AllArgsConstructor
+@Data
+public class IntegrityIssue {
+
+    public enum Type {
+        // the block does not fit inside the data file, or its header is unreadable
+        BLOCK_OUT_OF_BOUNDS,
+        // the block could not be decoded in the store's layout
+        CORRUPT_BLOCK,
+        // fewer records decoded than the index node counts
+        COUNT_MISMATCH,
+        // records whose date differs from their index node's date
+        DATE_MISMATCH,
+        // records whose id is not greater than the id before them
+        NON_INCREASING_ID,
+        // two index nodes claim the same bytes
+        OVERLAPPING_BLOCKS,
+        // bytes of the data file that no index node points at
+        ORPHANED_BYTES
+    }
+
+    private String symbol;
+    private Type type;
+    private long date;
+    private long offset;
+    private long bytes;
+
+    // records affected, for record-level issues
+    private long records;
+    private String message;
+
+}
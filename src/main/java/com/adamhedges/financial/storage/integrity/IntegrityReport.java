@@ -0,0 +1,38 @@
+package com.adamhedges.financial.storage.integrity;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Getter
+public class IntegrityReport {
+
+    // issues per checked symbol; symbols without problems map to an empty list
+    private final Map<String, List<IntegrityIssue>> issues = new ConcurrentHashMap<>();
+
+    // symbols that could not be checked at all
+    private final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+
+    private long bytesScanned;
+    private long elapsedNanos;
+
+    void complete(long bytesScanned, long elapsedNanos) {
+        this.bytesScanned = bytesScanned;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public boolean isClean() {
+        return failures.isEmpty() && issues.values().stream().allMatch(List::isEmpty);
+    }
+
+    public int getIssueCount() {
+        return issues.values().stream().mapToInt(List::size).sum();
+    }
+
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : bytesScanned * 1e9 / elapsedNanos;
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.adamhedges.financial.storage.integrity;
+
+import com.adamhedges.financial.storage.FileStore;
+import com.adamhedges.financial.storage.WorkerPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// runs FileStore.verifyIntegrity for many symbols over an executor and collects every issue into one report
+public class IntegrityVerifier<T extends Comparable<T>> implements AutoCloseable {
+
+    private final FileStore<T> fileStore;
+    private final WorkerPool workers;
+
+    // progress of the current run, readable from other threads while it is in flight
+    private final AtomicInteger symbolsTotal = new AtomicInteger();
+    private final AtomicInteger symbolsChecked = new AtomicInteger();
+    private final AtomicLong bytesScanned = new AtomicLong();
+    private volatile long startNanos = 0;
+
+    public IntegrityVerifier(FileStore<T> fileStore, int parallelism) {
+        this.fileStore = fileStore;
+        this.workers = new WorkerPool("verify", parallelism);
+    }
+
+    // the executor stays owned by the caller
+    public IntegrityVerifier(FileStore<T> fileStore, ExecutorService executor) {
+        this.fileStore = fileStore;
+        this.workers = new WorkerPool(executor);
+    }
+
+    // every data file in the adapter's data directory
+    public IntegrityReport verifyAll() throws IOException, InterruptedException {
+        return verify(DataFiles.symbols(fileStore.adapter));
+    }
+
+    public IntegrityReport verify(Collection<String> symbols) throws InterruptedException {
+        IntegrityReport report = new IntegrityReport();
+        symbolsTotal.set(symbols.size());
+        symbolsChecked.set(0);
+        bytesScanned.set(0);
+        startNanos = System.nanoTime();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (String symbol : symbols) {
+            futures.add(workers.submit(() -> {
+                try {
+                    report.getIssues().put(symbol, fileStore.verifyIntegrity(symbol, bytesScanned::addAndGet));
+                } catch (Exception ex) {
+                    report.getFailures().put(symbol, ex);
+                } finally {
+                    symbolsChecked.incrementAndGet();
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ignored) {
+                // failures are recorded by the task itself
+            }
+        }
+
+        report.complete(bytesScanned.get(), System.nanoTime() - startNanos);
+        return report;
+    }
+
+    public int getSymbolsTotal() {
+        return symbolsTotal.get();
+    }
+
+    public int getSymbolsChecked() {
+        return symbolsChecked.get();
+    }
+
+    public long getBytesScanned() {
+        return bytesScanned.get();
+    }
+
+    public double getBytesPerSecond() {
+        long elapsed = System.nanoTime() - startNanos;
+        return startNanos == 0 || elapsed == 0 ? 0.0 : bytesScanned.get() * 1e9 / elapsed;
+    }
+
+    @Override
+    public void close() {
+        workers.close();
+    }
+
+}
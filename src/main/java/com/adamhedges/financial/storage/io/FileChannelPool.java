@@ -0,0 +1,135 @@
+package com.adamhedges.financial.storage.io;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+// least recently used read-only channels, shared by concurrent readers through positional reads
+public class FileChannelPool implements AutoCloseable {
+
+    private final int maxOpenFiles;
+    private final LinkedHashMap<Path, Handle> handles = new LinkedHashMap<>(16, 0.75f, true);
+
+    public FileChannelPool(int maxOpenFiles) {
+        this.maxOpenFiles = maxOpenFiles;
+    }
+
+    // leases a channel for the file, reopening it if the file was replaced since it was pooled; close the handle to return it
+    public Handle acquire(Path path) throws IOException {
+        Object fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+
+        synchronized (this) {
+            Handle handle = handles.get(path);
+            if (handle != null && !Objects.equals(handle.fileKey, fileKey)) {
+                handles.remove(path);
+                handle.retire();
+                handle = null;
+            }
+
+            if (handle == null) {
+                handle = new Handle(this, FileChannel.open(path, StandardOpenOption.READ), fileKey);
+                handles.put(path, handle);
+
+                // evicted channels stay open until their last lease is returned
+                Iterator<Handle> eldest = handles.values().iterator();
+                while (handles.size() > maxOpenFiles && eldest.hasNext()) {
+                    Handle evicted = eldest.next();
+                    eldest.remove();
+                    evicted.retire();
+                }
+            }
+
+            handle.leases++;
+            return handle;
+        }
+    }
+
+    // an unpooled channel with the same handle interface, closed when the handle is closed
+    public static Handle open(Path path) throws IOException {
+        Handle handle = new Handle(null, FileChannel.open(path, StandardOpenOption.READ), null);
+        handle.leases++;
+        handle.retired = true;
+        return handle;
+    }
+
+    public synchronized void invalidate(Path path) {
+        Handle handle = handles.remove(path);
+        if (handle != null) {
+            handle.retire();
+        }
+    }
+
+    public synchronized int size() {
+        return handles.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        List<Handle> retired = new ArrayList<>(handles.values());
+        handles.clear();
+        retired.forEach(Handle::retire);
+    }
+
+    private synchronized void release(Handle handle) {
+        handle.leases--;
+        handle.closeIfUnused();
+    }
+
+    public static class Handle implements AutoCloseable {
+
+        private final FileChannelPool pool;
+        private final FileChannel channel;
+        private final Object fileKey;
+
+        // guarded by the pool, or by the handle itself when unpooled
+        private int leases = 0;
+        private boolean retired = false;
+
+        private Handle(FileChannelPool pool, FileChannel channel, Object fileKey) {
+            this.pool = pool;
+            this.channel = channel;
+            this.fileKey = fileKey;
+        }
+
+        public FileChannel getChannel() {
+            return channel;
+        }
+
+        private void retire() {
+            retired = true;
+            closeIfUnused();
+        }
+
+        private void closeIfUnused() {
+            if (retired && leases == 0) {
+                try {
+                    channel.close();
+                } catch (IOException ioex) {
+                    System.out.printf("Unable to close pooled file channel: %s%n", ioex.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (pool != null) {
+                pool.release(this);
+            } else {
+                synchronized (this) {
+                    leases--;
+                    closeIfUnused();
+                }
+            }
+        }
+
+    }
+
+}
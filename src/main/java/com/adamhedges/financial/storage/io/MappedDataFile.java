@@ -0,0 +1,53 @@
+package com.adamhedges.financial.storage.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.Optional;
+
+public class MappedDataFile {
+
+    private final Path path;
+
+    private Object fileKey = null;
+    private long size = -1;
+    private MappedByteBuffer mapping = null;
+
+    public MappedDataFile(String filename) {
+        this.path = Paths.get(filename);
+    }
+
+    // remaps whenever the file was resized or replaced; files too large for one mapping return empty
+    public synchronized Optional<ByteBuffer> map() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (attributes.size() > Integer.MAX_VALUE) {
+            release();
+            return Optional.empty();
+        }
+
+        if (mapping == null || attributes.size() != size || !Objects.equals(attributes.fileKey(), fileKey)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, attributes.size());
+                size = attributes.size();
+                fileKey = attributes.fileKey();
+            }
+        }
+
+        return Optional.of(mapping.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    public synchronized void release() {
+        mapping = null;
+        size = -1;
+        fileKey = null;
+    }
+
+}
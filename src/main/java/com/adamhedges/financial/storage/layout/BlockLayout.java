@@ -0,0 +1,118 @@
+package com.adamhedges.financial.storage.layout;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+// how the records of one IndexNode day block are arranged on disk
+public enum BlockLayout {
+
+    // records one after another, exactly as the DataAdapter encodes them
+    ROW {
+        @Override
+        public void fromRows(ByteBuffer rows, int count, List<ColumnType> columns, ByteBuffer target) {
+            target.put(rows);
+        }
+
+        @Override
+        public void toRows(ByteBuffer stored, int count, List<ColumnType> columns, ByteBuffer target) {
+            target.put(stored);
+        }
+    },
+
+    // each column stored contiguously for the whole block; column c starts at count * offsetOf(c)
+    COLUMNAR {
+        @Override
+        public void fromRows(ByteBuffer rows, int count, List<ColumnType> columns, ByteBuffer target) {
+            transpose(rows, target, count, columns, true);
+        }
+
+        @Override
+        public void toRows(ByteBuffer stored, int count, List<ColumnType> columns, ByteBuffer target) {
+            transpose(stored, target, count, columns, false);
+        }
+    },
+
+    // delta-of-delta and XOR encoded columns behind a size header; blocks vary in size, so FileStore only allows this with appendOnly
+    COMPRESSED {
+        @Override
+        public void fromRows(ByteBuffer rows, int count, List<ColumnType> columns, ByteBuffer target) {
+            CompressedBlocks.encode(rows, count, columns, target);
+        }
+
+        @Override
+        public void toRows(ByteBuffer stored, int count, List<ColumnType> columns, ByteBuffer target) {
+            CompressedBlocks.decode(stored, count, columns, target);
+        }
+
+        @Override
+        public boolean isFixedSize() {
+            return false;
+        }
+
+        @Override
+        public int getHeaderBytes() {
+            return CompressedBlocks.SIZE_BYTES;
+        }
+
+        @Override
+        public int maxStoredBytes(int rawBytes) {
+            return rawBytes + CompressedBlocks.HEADER_BYTES;
+        }
+
+        @Override
+        public int storedBytes(ByteBuffer block, int rawBytes) {
+            return block.remaining() < CompressedBlocks.SIZE_BYTES ? Integer.MAX_VALUE : block.getInt(block.position());
+        }
+    };
+
+    // converts a block of row-layout records at rows' position into this layout at target's position, advancing both
+    public abstract void fromRows(ByteBuffer rows, int count, List<ColumnType> columns, ByteBuffer target);
+
+    // converts a block in this layout at stored's position into row-layout records at target's position, advancing both
+    public abstract void toRows(ByteBuffer stored, int count, List<ColumnType> columns, ByteBuffer target);
+
+    // whether a block of n records always occupies the same number of bytes as n row-layout records
+    public boolean isFixedSize() {
+        return true;
+    }
+
+    // leading bytes of a block needed by storedBytes; fixed-size layouts need none
+    public int getHeaderBytes() {
+        return 0;
+    }
+
+    // upper bound on the stored size of a block whose row-layout records take rawBytes
+    public int maxStoredBytes(int rawBytes) {
+        return rawBytes;
+    }
+
+    // stored size of the block at block's position, read from its header when the size varies; Integer.MAX_VALUE if the header is cut short
+    public int storedBytes(ByteBuffer block, int rawBytes) {
+        return rawBytes;
+    }
+
+    private static void transpose(ByteBuffer source, ByteBuffer target, int count, List<ColumnType> columns, boolean toColumns) {
+        int recordsize = ColumnType.offsetOf(columns, columns.size());
+        int sourcebase = source.position();
+        int targetbase = target.position();
+
+        int offset = 0;
+        for (ColumnType column : columns) {
+            int width = column.getSizeBytes();
+            for (int r = 0; r < count; r++) {
+                int rowposition = r * recordsize + offset;
+                int columnposition = count * offset + r * width;
+                if (toColumns) {
+                    target.put(targetbase + columnposition, source, sourcebase + rowposition, width);
+                } else {
+                    target.put(targetbase + rowposition, source, sourcebase + columnposition, width);
+                }
+            }
+            offset += width;
+        }
+
+        source.position(sourcebase + count * recordsize);
+        target.position(targetbase + count * recordsize);
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.adamhedges.financial.storage.layout;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// stored versus decoded size of a symbol's live day blocks, and how long decoding them took
+@Getter
+@AllArgsConstructor
+public class BlockStats {
+
+    private final int blocks;
+    private final long records;
+    private final long rawBytes;
+    private final long storedBytes;
+    private final long decodeNanos;
+
+    public double getCompressionRatio() {
+        return storedBytes == 0 ? 1.0 : (double) rawBytes / storedBytes;
+    }
+
+    // row-layout bytes produced per second of decoding
+    public double getDecodeBytesPerSecond() {
+        return decodeNanos == 0 ? 0.0 : rawBytes * 1e9 / decodeNanos;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.adamhedges.financial.storage.layout;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public enum ColumnType {
+
+    LONG(8, false),
+    DOUBLE(8, true),
+    INT(4, false),
+    FLOAT(4, true);
+
+    private final int sizeBytes;
+    private final boolean floatingPoint;
+
+    ColumnType(int sizeBytes, boolean floatingPoint) {
+        this.sizeBytes = sizeBytes;
+        this.floatingPoint = floatingPoint;
+    }
+
+    public int getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public boolean isFloatingPoint() {
+        return floatingPoint;
+    }
+
+    // the value at index as a long; integers are sign-extended, floating point values are their raw bits
+    public long getBits(ByteBuffer buffer, int index) {
+        return switch (this) {
+            case LONG, DOUBLE -> buffer.getLong(index);
+            case INT -> buffer.getInt(index);
+            case FLOAT -> buffer.getInt(index) & 0xFFFFFFFFL;
+        };
+    }
+
+    public void putBits(ByteBuffer buffer, int index, long bits) {
+        switch (this) {
+            case LONG, DOUBLE -> buffer.putLong(index, bits);
+            case INT, FLOAT -> buffer.putInt(index, (int) bits);
+        }
+    }
+
+    // byte offset of a column within a single row-layout record
+    public static int offsetOf(List<ColumnType> columns, int column) {
+        int offset = 0;
+        for (int i = 0; i < column; i++) {
+            offset += columns.get(i).getSizeBytes();
+        }
+        return offset;
+    }
+
+}
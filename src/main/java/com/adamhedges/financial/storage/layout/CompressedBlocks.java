@@ -0,0 +1,264 @@
+package com.adamhedges.financial.storage.layout;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+// Gorilla-style block codec: delta-of-delta for integer columns, XOR against the previous value for floating point columns
+final class CompressedBlocks {
+
+    // stored block size including the header, followed by a byte saying whether the body is encoded or raw rows
+    static final int HEADER_BYTES = 5;
+    static final int SIZE_BYTES = 4;
+
+    private static final byte RAW = 0;
+    private static final byte ENCODED = 1;
+
+    private CompressedBlocks() { }
+
+    static void encode(ByteBuffer rows, int count, List<ColumnType> columns, ByteBuffer target) {
+        int recordsize = ColumnType.offsetOf(columns, columns.size());
+        int rawbytes = count * recordsize;
+        int base = rows.position();
+
+        // columns are encoded one after another; give up on encoding as soon as it is no smaller than the raw rows
+        BitWriter bits = new BitWriter(rawbytes / 4 + 16);
+        int offset = 0;
+        for (ColumnType column : columns) {
+            if (column.isFloatingPoint()) {
+                encodeXor(rows, base, count, recordsize, offset, column, bits);
+            } else {
+                encodeDeltas(rows, base, count, recordsize, offset, column, bits);
+            }
+            if (bits.sizeBytes() >= rawbytes) {
+                break;
+            }
+            offset += column.getSizeBytes();
+        }
+
+        if (bits.sizeBytes() < rawbytes) {
+            target.putInt(HEADER_BYTES + bits.sizeBytes()).put(ENCODED);
+            target.put(bits.bytes, 0, bits.sizeBytes());
+        } else {
+            target.putInt(HEADER_BYTES + rawbytes).put(RAW);
+            target.put(target.position(), rows, base, rawbytes);
+            target.position(target.position() + rawbytes);
+        }
+
+        rows.position(base + rawbytes);
+    }
+
+    static void decode(ByteBuffer stored, int count, List<ColumnType> columns, ByteBuffer target) {
+        int recordsize = ColumnType.offsetOf(columns, columns.size());
+        int rawbytes = count * recordsize;
+        int start = stored.position();
+        int nbytes = stored.getInt(start);
+        int base = target.position();
+
+        if (stored.get(start + SIZE_BYTES) == RAW) {
+            target.put(base, stored, start + HEADER_BYTES, rawbytes);
+        } else {
+            BitReader bits = new BitReader(stored, start + HEADER_BYTES, start + nbytes);
+            int offset = 0;
+            for (ColumnType column : columns) {
+                if (column.isFloatingPoint()) {
+                    decodeXor(bits, target, base, count, recordsize, offset, column);
+                } else {
+                    decodeDeltas(bits, target, base, count, recordsize, offset, column);
+                }
+                offset += column.getSizeBytes();
+            }
+        }
+
+        stored.position(start + nbytes);
+        target.position(base + rawbytes);
+    }
+
+    // ids, dates and times mostly advance by a constant step, so the change in the step is usually zero or tiny
+    private static void encodeDeltas(ByteBuffer rows, int base, int count, int recordsize, int offset, ColumnType column, BitWriter bits) {
+        long previous = 0;
+        long delta = 0;
+        for (int r = 0; r < count; r++) {
+            long value = column.getBits(rows, base + r * recordsize + offset);
+            if (r == 0) {
+                bits.write(value, 64);
+            } else {
+                long dod = (value - previous) - delta;
+                delta = value - previous;
+                if (dod == 0) {
+                    bits.write(0b0, 1);
+                } else if (dod >= -64 && dod < 64) {
+                    bits.write(0b10, 2);
+                    bits.write(dod, 7);
+                } else if (dod >= -256 && dod < 256) {
+                    bits.write(0b110, 3);
+                    bits.write(dod, 9);
+                } else if (dod >= -2048 && dod < 2048) {
+                    bits.write(0b1110, 4);
+                    bits.write(dod, 12);
+                } else {
+                    bits.write(0b1111, 4);
+                    bits.write(dod, 64);
+                }
+            }
+            previous = value;
+        }
+    }
+
+    private static void decodeDeltas(BitReader bits, ByteBuffer target, int base, int count, int recordsize, int offset, ColumnType column) {
+        long previous = 0;
+        long delta = 0;
+        for (int r = 0; r < count; r++) {
+            long value;
+            if (r == 0) {
+                value = bits.read(64);
+            } else {
+                long dod;
+                if (bits.read(1) == 0) {
+                    dod = 0;
+                } else if (bits.read(1) == 0) {
+                    dod = signExtend(bits.read(7), 7);
+                } else if (bits.read(1) == 0) {
+                    dod = signExtend(bits.read(9), 9);
+                } else if (bits.read(1) == 0) {
+                    dod = signExtend(bits.read(12), 12);
+                } else {
+                    dod = bits.read(64);
+                }
+                delta += dod;
+                value = previous + delta;
+            }
+            column.putBits(target, base + r * recordsize + offset, value);
+            previous = value;
+        }
+    }
+
+    // neighbouring prices share sign, exponent and leading mantissa bits, so their XOR is mostly zeros
+    private static void encodeXor(ByteBuffer rows, int base, int count, int recordsize, int offset, ColumnType column, BitWriter bits) {
+        int width = column.getSizeBytes() * 8;
+        long previous = 0;
+        int leading = -1;
+        int trailing = 0;
+        for (int r = 0; r < count; r++) {
+            long value = column.getBits(rows, base + r * recordsize + offset);
+            if (r == 0) {
+                bits.write(value, width);
+            } else {
+                long xor = value ^ previous;
+                if (xor == 0) {
+                    bits.write(0b0, 1);
+                } else {
+                    int lz = Math.min(Long.numberOfLeadingZeros(xor) - (64 - width), 31);
+                    int tz = Long.numberOfTrailingZeros(xor);
+                    if (leading >= 0 && lz >= leading && tz >= trailing) {
+                        // the meaningful bits fit inside the previous window
+                        bits.write(0b10, 2);
+                        bits.write(xor >>> trailing, width - leading - trailing);
+                    } else {
+                        leading = lz;
+                        trailing = tz;
+                        int meaningful = width - leading - trailing;
+                        bits.write(0b11, 2);
+                        bits.write(leading, 5);
+                        bits.write(meaningful == 64 ? 0 : meaningful, 6);
+                        bits.write(xor >>> trailing, meaningful);
+                    }
+                }
+            }
+            previous = value;
+        }
+    }
+
+    private static void decodeXor(BitReader bits, ByteBuffer target, int base, int count, int recordsize, int offset, ColumnType column) {
+        int width = column.getSizeBytes() * 8;
+        long previous = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int r = 0; r < count; r++) {
+            long value;
+            if (r == 0) {
+                value = bits.read(width);
+            } else if (bits.read(1) == 0) {
+                value = previous;
+            } else {
+                if (bits.read(1) == 1) {
+                    leading = (int) bits.read(5);
+                    int meaningful = (int) bits.read(6);
+                    trailing = width - leading - (meaningful == 0 ? 64 : meaningful);
+                }
+                value = previous ^ (bits.read(width - leading - trailing) << trailing);
+            }
+            column.putBits(target, base + r * recordsize + offset, value);
+            previous = value;
+        }
+    }
+
+    private static long signExtend(long value, int nbits) {
+        return (value << (64 - nbits)) >> (64 - nbits);
+    }
+
+    private static class BitWriter {
+
+        private byte[] bytes;
+        private long position = 0;
+
+        private BitWriter(int capacity) {
+            bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        // appends the low nbits of value, most significant first
+        private void write(long value, int nbits) {
+            while (nbits > 0) {
+                int index = (int) (position >>> 3);
+                if (index >= bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+
+                int free = 8 - (int) (position & 7);
+                int take = Math.min(free, nbits);
+                int chunk = (int) ((value >>> (nbits - take)) & ((1 << take) - 1));
+                bytes[index] |= (byte) (chunk << (free - take));
+                position += take;
+                nbits -= take;
+            }
+        }
+
+        private int sizeBytes() {
+            return (int) ((position + 7) >>> 3);
+        }
+
+    }
+
+    private static class BitReader {
+
+        private final ByteBuffer source;
+        private final int limit;
+        private long position;
+
+        private BitReader(ByteBuffer source, int start, int limit) {
+            this.source = source;
+            this.limit = limit;
+            this.position = (long) start << 3;
+        }
+
+        private long read(int nbits) {
+            long value = 0;
+            while (nbits > 0) {
+                int index = (int) (position >>> 3);
+                if (index >= limit) {
+                    throw new IndexOutOfBoundsException("Compressed block ends before all records were decoded");
+                }
+
+                int available = 8 - (int) (position & 7);
+                int take = Math.min(available, nbits);
+                int chunk = ((source.get(index) & 0xFF) >>> (available - take)) & ((1 << take) - 1);
+                value = (value << take) | chunk;
+                position += take;
+                nbits -= take;
+            }
+            return value;
+        }
+
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.adamhedges.financial.storage.rollup;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+
+// OHLCV and id range of one stored day, kept in the rollup tier so that daily queries need no data file reads
+@AllArgsConstructor
+@Data
+@NoArgsConstructor
+public class DailySummary {
+
+    public static final int BINARY_SIZE_BYTES = 68;
+
+    private long date;
+    private int count;
+    private long firstId;
+    private long lastId;
+    private double open;
+    private double high;
+    private double low;
+    private double close;
+    private long volume;
+
+    public static DailySummary fromBinary(ByteBuffer buffer, int position) {
+        DailySummary summary = new DailySummary();
+        summary.date = buffer.getLong(position);
+        summary.count = buffer.getInt(position + 8);
+        summary.firstId = buffer.getLong(position + 12);
+        summary.lastId = buffer.getLong(position + 20);
+        summary.open = buffer.getDouble(position + 28);
+        summary.high = buffer.getDouble(position + 36);
+        summary.low = buffer.getDouble(position + 44);
+        summary.close = buffer.getDouble(position + 52);
+        summary.volume = buffer.getLong(position + 60);
+        return summary;
+    }
+
+    public void toBinary(ByteBuffer buffer) {
+        buffer.putLong(date);
+        buffer.putInt(count);
+        buffer.putLong(firstId);
+        buffer.putLong(lastId);
+        buffer.putDouble(open);
+        buffer.putDouble(high);
+        buffer.putDouble(low);
+        buffer.putDouble(close);
+        buffer.putLong(volume);
+    }
+
+    public DailySummary copy() {
+        return new DailySummary(date, count, firstId, lastId, open, high, low, close, volume);
+    }
+
+    // one summary for consecutive days in date order, dated with the first of them, e.g. for weekly or monthly bars
+    public static Optional<DailySummary> combine(List<DailySummary> days) {
+        if (days.isEmpty()) {
+            return Optional.empty();
+        }
+
+        DailySummary first = days.get(0);
+        DailySummary combined = new DailySummary(first.date, 0, first.firstId, first.lastId, first.open, first.high, first.low, first.close, 0);
+        for (DailySummary day : days) {
+            combined.count += day.count;
+            combined.lastId = day.lastId;
+            combined.high = Math.max(combined.high, day.high);
+            combined.low = Math.min(combined.low, day.low);
+            combined.close = day.close;
+            combined.volume += day.volume;
+        }
+        return Optional.of(combined);
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.adamhedges.financial.storage.rollup;
+
+import com.adamhedges.financial.storage.DataAdapter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// per-symbol daily summaries stored next to the index as fixed-width little-endian entries sorted by date;
+// callers serialize access per symbol, as FileStore does with its symbol locks
+public class RollupStore<T extends Comparable<T>> extends ConcurrentHashMap<String, TreeMap<Long, DailySummary>> {
+
+    public static final String EXTENSION = "rollup";
+
+    private final DataAdapter<T> adapter;
+    private final int maxResidentSymbols;
+
+    // the access clock value of each resident symbol's last use, as SymbolIndex tracks it
+    private final Map<String, Long> recent = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+
+    public RollupStore(DataAdapter<T> dataAdapter) {
+        this(dataAdapter, 0);
+    }
+
+    // keeps at most maxResidentSymbols symbols loaded (0 for no limit), dropping the least recently used;
+    // every update reaches the file before it returns, so a dropped symbol is simply read again when next used
+    public RollupStore(DataAdapter<T> dataAdapter, int maxResidentSymbols) {
+        this.adapter = dataAdapter;
+        this.maxResidentSymbols = maxResidentSymbols;
+    }
+
+    public String getRollupFilePath(String symbol) {
+        return adapter.getIndexFilePath(symbol, EXTENSION);
+    }
+
+    public TreeMap<Long, DailySummary> load(String symbol) {
+        if (maxResidentSymbols <= 0) {
+            return this.computeIfAbsent(symbol, this::read);
+        }
+
+        recent.put(symbol, clock.incrementAndGet());
+        TreeMap<Long, DailySummary> days = this.computeIfAbsent(symbol, this::read);
+        if (this.size() > maxResidentSymbols) {
+            evictLeastRecent(symbol);
+        }
+        return days;
+    }
+
+    private void evictLeastRecent(String loaded) {
+        List<Map.Entry<String, Long>> accessed = new ArrayList<>(recent.entrySet());
+        accessed.sort(Map.Entry.comparingByValue());
+        for (Map.Entry<String, Long> entry : accessed) {
+            if (this.size() <= maxResidentSymbols) {
+                break;
+            }
+            if (!entry.getKey().equals(loaded)) {
+                this.remove(entry.getKey());
+                recent.remove(entry.getKey());
+            }
+        }
+    }
+
+    private TreeMap<Long, DailySummary> read(String symbol) {
+        TreeMap<Long, DailySummary> days = new TreeMap<>();
+
+        try {
+            Path path = Paths.get(getRollupFilePath(symbol));
+            if (Files.exists(path)) {
+                // a trailing partial entry from an interrupted append is ignored and overwritten by the next one
+                ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+                int n = buffer.limit() / DailySummary.BINARY_SIZE_BYTES;
+                for (int i = 0; i < n; i++) {
+                    DailySummary summary = DailySummary.fromBinary(buffer, i * DailySummary.BINARY_SIZE_BYTES);
+                    days.put(summary.getDate(), summary);
+                }
+            }
+        } catch (IOException ioex) {
+            System.out.printf("Unable to read %s rollup file: %s%n", symbol, ioex.getMessage());
+        }
+
+        return days;
+    }
+
+    // replaces the symbol's summaries for the given days; an empty summary removes the day
+    // days already stored are patched where they stand and days after the last are appended, so only an inserted
+    // or removed day, which moves the entries after it, rewrites the file
+    public void update(String symbol, TreeMap<Long, Optional<DailySummary>> changes) throws IOException {
+        TreeMap<Long, DailySummary> days = load(symbol);
+        Long last = days.isEmpty() ? null : days.lastKey();
+        boolean inplace = true;
+        for (Map.Entry<Long, Optional<DailySummary>> change : changes.entrySet()) {
+            boolean stored = days.containsKey(change.getKey());
+            if (change.getValue().isEmpty() ? stored : !stored && last != null && change.getKey() < last) {
+                inplace = false;
+            }
+        }
+
+        changes.forEach((date, summary) -> {
+            if (summary.isPresent()) {
+                days.put(date, summary.get());
+            } else {
+                days.remove(date);
+            }
+        });
+
+        if (!inplace) {
+            write(symbol, days);
+            return;
+        }
+
+        ByteBuffer entry = ByteBuffer.allocate(DailySummary.BINARY_SIZE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(Paths.get(getRollupFilePath(symbol)), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            for (Map.Entry<Long, Optional<DailySummary>> change : changes.entrySet()) {
+                if (change.getValue().isEmpty()) {
+                    continue;
+                }
+
+                // counted from the end, since the days written are almost always the latest
+                long position = (long) (days.size() - days.tailMap(change.getKey(), true).size()) * DailySummary.BINARY_SIZE_BYTES;
+                entry.clear();
+                change.getValue().get().toBinary(entry);
+                entry.flip();
+                while (entry.hasRemaining()) {
+                    position += channel.write(entry, position);
+                }
+            }
+        }
+    }
+
+    // swaps in a complete set of summaries for the symbol, such as one rebuilt from its data file
+    public void reset(String symbol, TreeMap<Long, DailySummary> days) throws IOException {
+        this.put(symbol, days);
+        load(symbol);
+        write(symbol, days);
+    }
+
+    public void persist(String symbol) throws IOException {
+        write(symbol, load(symbol));
+    }
+
+    private void write(String symbol, TreeMap<Long, DailySummary> days) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(days.size() * DailySummary.BINARY_SIZE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        days.values().forEach(summary -> summary.toBinary(buffer));
+        buffer.flip();
+
+        // write a temporary file and move it over the old one so readers never see a partial rollup
+        Path path = Paths.get(getRollupFilePath(symbol));
+        Path temppath = Paths.get(String.format("%s.tmp", path));
+        try (FileChannel channel = FileChannel.open(temppath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temppath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // copies of the summaries, so callers cannot change the ones held here
+    public List<DailySummary> read(String symbol, long fromDate, long throughDate) {
+        List<DailySummary> days = new ArrayList<>();
+        load(symbol).subMap(fromDate, true, throughDate, true).values().forEach(summary -> days.add(summary.copy()));
+        return days;
+    }
+
+}
@@ -1,11 +1,19 @@
 package com.adamhedges.financial.storage;
 
 import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.financial.storage.helpers.PriceBarColumns;
+import com.adamhedges.financial.storage.helpers.PriceBarDecoder;
+import com.adamhedges.financial.storage.helpers.PriceBarFileStoreHelpers;
+import com.adamhedges.financial.storage.layout.ColumnType;
+import com.adamhedges.financial.storage.rollup.DailySummary;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
 
-public class SimpleDataAdapter extends DataAdapter<PriceBar> {
+public class SimpleDataAdapter extends DataAdapter<PriceBar> implements PriceBarDecoder, ItemTimeSource<PriceBar> {
 
     public SimpleDataAdapter() {
         super("", "data/minute", "index/minute");
@@ -21,8 +29,20 @@ public class SimpleDataAdapter extends DataAdapter<PriceBar> {
         return 16 * numRecords;
     }
 
+    // an 80 byte PriceBar plus its list reference
+    @Override
+    public long getDecodedSizeBytes(int numRecords) {
+        return 84L * numRecords;
+    }
+
+    @Override
+    public List<ColumnType> getColumns() {
+        return List.of(ColumnType.LONG, ColumnType.DOUBLE);
+    }
+
     @Override
     public void toByteBuffer(PriceBar item) {
+        ByteBuffer buffer = getBuffer();
         buffer.rewind();
         buffer.putLong(item.getId());
         buffer.putDouble(item.getOpen());
@@ -31,6 +51,7 @@ public class SimpleDataAdapter extends DataAdapter<PriceBar> {
 
     @Override
     public PriceBar fromByteBuffer(String symbol) {
+        ByteBuffer buffer = getBuffer();
         PriceBar bar = new PriceBar(symbol);
         bar.setId(buffer.getLong());
         bar.setDate(PriceBar.extractDateFromId(bar.getId()));
@@ -40,9 +61,32 @@ public class SimpleDataAdapter extends DataAdapter<PriceBar> {
         return bar;
     }
 
+    @Override
+    public void toByteBuffer(PriceBar item, ByteBuffer target) {
+        target.putLong(item.getId());
+        target.putDouble(item.getOpen());
+    }
+
+    @Override
+    public PriceBar fromByteBuffer(ByteBuffer source, String symbol) {
+        PriceBar bar = new PriceBar(symbol);
+        bar.setId(source.getLong());
+        bar.setDate(PriceBar.extractDateFromId(bar.getId()));
+        bar.setTime(PriceBar.extractTimeFromId(bar.getId()));
+        bar.setOpen(source.getDouble());
+        return bar;
+    }
+
+    @Override
+    public void decode(ByteBuffer source, PriceBarColumns target) {
+        long id = source.getLong();
+        double open = source.getDouble();
+        target.add(id, PriceBar.extractDateFromId(id), (int) PriceBar.extractTimeFromId(id), open, 0, 0, 0, 0);
+    }
+
     @Override
     public PriceBar read(RandomAccessFile file, String symbol) throws IOException {
-        int nbytes = file.read(buffer.array());
+        int nbytes = file.read(getBuffer().array());
         if (nbytes < getRecordSizeBytes()) {
             return null;
         }
@@ -60,4 +104,14 @@ public class SimpleDataAdapter extends DataAdapter<PriceBar> {
         return  item.getDate();
     }
 
+    @Override
+    public Optional<DailySummary> summarize(long date, List<PriceBar> items) {
+        return PriceBarFileStoreHelpers.summarize(date, items);
+    }
+
+    @Override
+    public long getItemTime(PriceBar item) {
+        return item.getTime();
+    }
+
 }
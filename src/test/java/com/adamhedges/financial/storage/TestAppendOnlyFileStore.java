@@ -0,0 +1,49 @@
+package com.adamhedges.financial.storage;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.financial.storage.exceptions.FileStoreIntegrityException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+public class TestAppendOnlyFileStore extends TestPriceBarFileStore {
+
+    private static FileStoreOptions getOptions() {
+        FileStoreOptions options = new FileStoreOptions();
+        options.setAppendOnly(true);
+        return options;
+    }
+
+    public TestAppendOnlyFileStore() {
+        super("TSTAPP", getOptions());
+    }
+
+    @Test
+    public void compact() throws IOException, FileStoreIntegrityException {
+        int n = getTestRecordCount();
+        writeTestRecords(20220103L, 0, false);
+        writeTestRecords(20220105L, n, false);
+        writeTestRecords(20220104L, n * 2, false);
+
+        // grow the first day so it gets appended and leaves its old block behind
+        List<PriceBar> grown = testRecords.subList(0, n);
+        grown.add(generateRandomizedRecord(symbol, 20220103L, n));
+        filestore.write(symbol, 20220103L, grown);
+        Collections.sort(testRecords);
+
+        Assertions.assertEquals(filestore.adapter.getRecordSizeBytes(n), filestore.getDeadBytes(symbol));
+        filestore.checkIntegrity(symbol);
+
+        filestore.compact(symbol);
+        Assertions.assertEquals(0, filestore.getDeadBytes(symbol));
+        filestore.checkIntegrity(symbol);
+
+        filestore.index.remove(symbol);
+        List<PriceBar> output = filestore.read(symbol, 20220103L, 20220105L);
+        Assertions.assertEquals(testRecords, output);
+    }
+
+}
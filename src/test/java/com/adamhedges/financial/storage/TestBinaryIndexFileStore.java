@@ -0,0 +1,17 @@
+package com.adamhedges.financial.storage;
+
+import com.adamhedges.financial.storage.index.IndexFormat;
+
+public class TestBinaryIndexFileStore extends TestPriceBarFileStore {
+
+    private static FileStoreOptions getOptions() {
+        FileStoreOptions options = new FileStoreOptions();
+        options.setIndexFormat(IndexFormat.BINARY);
+        return options;
+    }
+
+    public TestBinaryIndexFileStore() {
+        super("TSTBIN", getOptions());
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.adamhedges.financial.storage;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.financial.storage.cache.BlockCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+public class TestCachedFileStore extends TestPriceBarFileStore {
+
+    private static FileStoreOptions getOptions() {
+        FileStoreOptions options = new FileStoreOptions();
+        options.setBlockCacheBytes(1 << 20);
+        return options;
+    }
+
+    public TestCachedFileStore() {
+        super("TSTCCH", getOptions());
+    }
+
+    @Test
+    public void cacheHitsAndShiftedBlocks() {
+        BlockCache<PriceBar> cache = filestore.getBlockCache().orElseThrow();
+        cache.clear();
+
+        int n = getTestRecordCount();
+        writeTestRecords(20220103L, 0, false);
+        writeTestRecords(20220104L, n, false);
+        writeTestRecords(20220105L, n * 2, false);
+
+        Assertions.assertEquals(testRecords, filestore.read(symbol, 20220103L, 20220105L));
+        long misses = cache.getMisses();
+        Assertions.assertEquals(testRecords, filestore.read(symbol, 20220103L, 20220105L));
+        Assertions.assertEquals(misses, cache.getMisses());
+        Assertions.assertTrue(cache.getHits() >= 3);
+        // weighted by the decoded items rather than the stored records
+        Assertions.assertEquals(filestore.adapter.getDecodedSizeBytes(n * 3), cache.getSizeBytes());
+
+        // reads are given copies, so changing one leaves the cached block alone
+        PriceBar changed = filestore.read(symbol, 20220103L).get(0);
+        changed.setOpen(-1.0);
+        Assertions.assertEquals(testRecords.get(0).getOpen(), filestore.read(symbol, 20220103L).get(0).getOpen());
+        Assertions.assertNotSame(filestore.read(symbol, 20220103L).get(0), filestore.read(symbol, 20220103L).get(0));
+
+        // grow the first day, which shifts the two later blocks, and read everything back
+        List<PriceBar> grown = testRecords.subList(0, n);
+        grown.add(generateRandomizedRecord(symbol, 20220103L, n));
+        filestore.write(symbol, 20220103L, grown);
+        Collections.sort(testRecords);
+
+        Assertions.assertEquals(testRecords, filestore.read(symbol, 20220103L, 20220105L));
+        Assertions.assertEquals(misses + 1, cache.getMisses());
+
+        // uncached reads see the same data
+        cache.clear();
+        Assertions.assertEquals(testRecords, filestore.read(symbol, 20220103L, 20220105L));
+    }
+
+}
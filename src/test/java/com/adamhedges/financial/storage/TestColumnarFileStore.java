@@ -0,0 +1,17 @@
+package com.adamhedges.financial.storage;
+
+import com.adamhedges.financial.storage.layout.BlockLayout;
+
+public class TestColumnarFileStore extends TestPriceBarFileStore {
+
+    private static FileStoreOptions getOptions() {
+        FileStoreOptions options = new FileStoreOptions();
+        options.setLayout(BlockLayout.COLUMNAR);
+        return options;
+    }
+
+    public TestColumnarFileStore() {
+        super("TSTCOL", getOptions());
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.adamhedges.financial.storage;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.financial.storage.layout.BlockLayout;
+import com.adamhedges.financial.storage.layout.BlockStats;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestCompressedFileStore extends TestPriceBarFileStore {
+
+    private static FileStoreOptions getOptions() {
+        FileStoreOptions options = new FileStoreOptions();
+        options.setAppendOnly(true);
+        options.setLayout(BlockLayout.COMPRESSED);
+        return options;
+    }
+
+    public TestCompressedFileStore() {
+        super("TSTCMP", getOptions());
+    }
+
+    @Test
+    public void compressionRatio() throws IOException {
+        // a slowly drifting price compresses well, unlike the randomized test records
+        List<PriceBar> bars = new ArrayList<>();
+        for (int i = 0; i < 390; i++) {
+            PriceBar bar = new PriceBar(symbol, 20220103L, 930 + i);
+            bar.setOpen(100.0 + (i / 10) * 0.25);
+            bars.add(bar);
+        }
+        filestore.write(symbol, 20220103L, new ArrayList<>(bars));
+
+        Assertions.assertEquals(bars, filestore.read(symbol, 20220103L));
+
+        BlockStats stats = filestore.getBlockStats(symbol);
+        Assertions.assertEquals(1, stats.getBlocks());
+        Assertions.assertEquals(390, stats.getRecords());
+        Assertions.assertTrue(stats.getCompressionRatio() > 4.0);
+        Assertions.assertEquals(0, filestore.getDeadBytes(symbol));
+    }
+
+    @Test
+    public void requiresAppendOnly() {
+        FileStoreOptions options = new FileStoreOptions();
+        options.setLayout(BlockLayout.COMPRESSED);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new FileStore<>(new SimpleDataAdapter(), options));
+    }
+
+}
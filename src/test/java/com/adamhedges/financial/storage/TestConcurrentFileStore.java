@@ -0,0 +1,77 @@
+package com.adamhedges.financial.storage;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestConcurrentFileStore {
+
+    private static final String[] symbols = { "TSTCC1", "TSTCC2", "TSTCC3", "TSTCC4" };
+    private static final int numDays = 5;
+    private static final int numRecords = 20;
+
+    private final FileStore<PriceBar> filestore = new FileStore<>(new SimpleDataAdapter());
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (String symbol : symbols) {
+            Files.deleteIfExists(Paths.get(filestore.adapter.getDataFilePath(symbol)));
+            Files.deleteIfExists(Paths.get(filestore.adapter.getIndexFilePath(symbol)));
+        }
+    }
+
+    private List<PriceBar> getBars(String symbol, long date) {
+        List<PriceBar> bars = new ArrayList<>();
+        for (int i = 0; i < numRecords; i++) {
+            bars.add(new PriceBar(symbol, date, 930 + i));
+        }
+        return bars;
+    }
+
+    @Test
+    public void TestConcurrentFileStore_readWrite() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String symbol : symbols) {
+                futures.add(executor.submit(() -> {
+                    // write newest first to force shifting
+                    for (int d = numDays; d > 0; d--) {
+                        filestore.write(symbol, 20220100L + d, getBars(symbol, 20220100L + d));
+                    }
+                }));
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        List<PriceBar> bars = filestore.read(symbol, 20220101L, 20220105L);
+                        Assertions.assertEquals(0, bars.size() % numRecords, "Torn read");
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (String symbol : symbols) {
+            List<PriceBar> bars = filestore.read(symbol, 20220101L, 20220105L);
+            Assertions.assertEquals(numDays * numRecords, bars.size());
+            for (int i = 1; i < bars.size(); i++) {
+                Assertions.assertTrue(bars.get(i - 1).getId() < bars.get(i).getId());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.adamhedges.financial.storage;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestDataAdapter {
+
+    // only the per-record methods, so every encode and decode goes through the record buffer
+    private static class RecordDataAdapter extends DataAdapter<PriceBar> {
+
+        public RecordDataAdapter() {
+            super("", "data/minute", "index/minute");
+        }
+
+        @Override
+        public int getRecordSizeBytes() {
+            return getRecordSizeBytes(1);
+        }
+
+        @Override
+        public int getRecordSizeBytes(int numRecords) {
+            return 16 * numRecords;
+        }
+
+        @Override
+        public void toByteBuffer(PriceBar item) {
+            ByteBuffer buffer = getBuffer();
+            buffer.rewind();
+            buffer.putLong(item.getId());
+            buffer.putDouble(item.getOpen());
+            buffer.rewind();
+        }
+
+        @Override
+        public PriceBar fromByteBuffer(String symbol) {
+            ByteBuffer buffer = getBuffer();
+            PriceBar bar = new PriceBar(symbol);
+            bar.setId(buffer.getLong());
+            bar.setOpen(buffer.getDouble());
+            buffer.rewind();
+            return bar;
+        }
+
+        @Override
+        public PriceBar read(RandomAccessFile file, String symbol) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long getItemId(PriceBar item) {
+            return item.getId();
+        }
+
+        @Override
+        public long getItemDate(PriceBar item) {
+            return item.getDate();
+        }
+
+    }
+
+    @Test
+    public void TestDataAdapter_bulkRoundTrip() {
+        DataAdapter<PriceBar> adapter = new SimpleDataAdapter();
+
+        List<PriceBar> items = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            PriceBar bar = new PriceBar("TEST", 20240102L, 930 + i);
+            bar.setOpen(10.0 + i);
+            items.add(bar);
+        }
+
+        ByteBuffer block = adapter.allocate(items.size());
+        adapter.toByteBuffer(items, block);
+        Assertions.assertEquals(adapter.getRecordSizeBytes(items.size()), block.position());
+
+        block.flip();
+        List<PriceBar> output = new ArrayList<>();
+        int n = adapter.fromByteBuffer(block, "TEST", items.size(), output);
+
+        Assertions.assertEquals(items.size(), n);
+        Assertions.assertEquals(items, output);
+    }
+
+    @Test
+    public void TestDataAdapter_bulkDecodeShortBuffer() {
+        DataAdapter<PriceBar> adapter = new SimpleDataAdapter();
+        ByteBuffer block = adapter.allocate(2);
+        adapter.toByteBuffer(new PriceBar("TEST", 20240102L, 930), block);
+        block.flip();
+
+        List<PriceBar> output = new ArrayList<>();
+        Assertions.assertEquals(1, adapter.fromByteBuffer(block, "TEST", 2, output));
+        Assertions.assertEquals(930, output.get(0).getTime());
+    }
+
+    @Test
+    public void TestDataAdapter_concurrentRecords() throws Exception {
+        DataAdapter<PriceBar> adapter = new RecordDataAdapter();
+        int n = 2000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                long date = 20240101L + t;
+                results.add(executor.submit(() -> {
+                    List<PriceBar> bars = new ArrayList<>();
+                    for (int i = 0; i < n; i++) {
+                        PriceBar bar = new PriceBar("TSTADP", date, 930 + i % 390);
+                        bar.setOpen(date + i);
+                        bars.add(bar);
+                    }
+
+                    ByteBuffer rows = adapter.allocate(n);
+                    adapter.toByteBuffer(bars, rows);
+                    List<PriceBar> decoded = new ArrayList<>();
+                    adapter.fromByteBuffer(rows.flip(), "TSTADP", n, decoded);
+
+                    for (int i = 0; i < n; i++) {
+                        if (decoded.get(i).getId() != bars.get(i).getId() || decoded.get(i).getOpen() != bars.get(i).getOpen()) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+
+            for (Future<Boolean> result : results) {
+                Assertions.assertTrue(result.get());
+            }
+            Assertions.assertNotSame(adapter.getBuffer(), executor.submit(adapter::getBuffer).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
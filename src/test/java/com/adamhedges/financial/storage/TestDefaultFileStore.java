@@ -0,0 +1,9 @@
+package com.adamhedges.financial.storage;
+
+public class TestDefaultFileStore extends TestPriceBarFileStore {
+
+    public TestDefaultFileStore() {
+        super("TSTFS", new FileStoreOptions());
+    }
+
+}
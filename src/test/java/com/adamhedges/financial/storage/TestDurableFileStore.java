@@ -0,0 +1,187 @@
+package com.adamhedges.financial.storage;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.financial.storage.durability.LogRecord;
+import com.adamhedges.financial.storage.durability.SyncPolicy;
+import com.adamhedges.financial.storage.durability.WriteAheadLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestDurableFileStore extends TestPriceBarFileStore {
+
+    private static FileStoreOptions getOptions() {
+        FileStoreOptions options = new FileStoreOptions();
+        options.setSyncPolicy(SyncPolicy.ALWAYS);
+        return options;
+    }
+
+    public TestDurableFileStore() {
+        super("TSTDUR", getOptions());
+    }
+
+    @AfterEach
+    public void closeStore() throws IOException {
+        // releases the log for the next test's store
+        filestore.close();
+    }
+
+    @Override
+    protected void teardown() throws IOException {
+        // empty the log so the next test's store has nothing to replay
+        filestore.checkpoint();
+        super.teardown();
+    }
+
+    @Test
+    public void commitStats() {
+        writeTestRecords(20220103L, 0, false);
+        writeTestRecords(20220104L, 0, false);
+
+        WriteAheadLog wal = filestore.getWriteAheadLog().orElseThrow();
+        Assertions.assertEquals(2, wal.getCommits().get());
+        Assertions.assertEquals(2, wal.getSyncedRecords().get());
+        Assertions.assertTrue(wal.getSize() > 0);
+    }
+
+    @Test
+    public void recoverLoggedWrite() throws IOException {
+        filestore.write(symbol, 20220103L, new ArrayList<>(List.of(generateRandomizedRecord(symbol, 20220103L, 0))));
+        filestore.close();
+
+        // a write that was logged but never reached the data file, as after a crash
+        PriceBar bar = generateRandomizedRecord(symbol, 20220104L, 0);
+        ByteBuffer rows = filestore.adapter.allocate(1);
+        filestore.adapter.toByteBuffer(List.of(bar), rows);
+        Path walpath = WriteAheadLog.getPath(filestore.adapter);
+        try (WriteAheadLog wal = new WriteAheadLog(walpath, SyncPolicy.ALWAYS, 0)) {
+            wal.commit(wal.append(symbol, 20220104L, 1, rows.flip()));
+        }
+
+        try (FileStore<PriceBar> recovered = new FileStore<>(new SimpleDataAdapter(), getOptions())) {
+            List<PriceBar> replayed = recovered.read(symbol, 20220104L);
+            Assertions.assertEquals(1, replayed.size());
+            Assertions.assertEquals(bar.getId(), replayed.get(0).getId());
+            Assertions.assertEquals(bar.getOpen(), replayed.get(0).getOpen());
+            Assertions.assertEquals(1, recovered.read(symbol, 20220103L).size());
+            Assertions.assertEquals(0, Files.size(walpath));
+        }
+    }
+
+    @Test
+    public void recoverLoggedAppend() throws IOException {
+        int n = getTestRecordCount();
+        writeTestRecords(20220103L, 0, false);
+        // the append is logged on its own rather than as the whole day
+        long before = filestore.getWriteAheadLog().orElseThrow().getSize();
+        filestore.append(symbol, 20220103L, new ArrayList<>(List.of(generateRandomizedRecord(symbol, 20220103L, n))));
+        Assertions.assertTrue(filestore.getWriteAheadLog().orElseThrow().getSize() - before < filestore.adapter.getRecordSizeBytes(2) + 64);
+        filestore.close();
+
+        // one append that reached the data file before the crash and one that did not
+        PriceBar applied = filestore.read(symbol, 20220103L).get(n);
+        PriceBar bar = generateRandomizedRecord(symbol, 20220103L, n + 1);
+        Path walpath = WriteAheadLog.getPath(filestore.adapter);
+        try (WriteAheadLog wal = new WriteAheadLog(walpath, SyncPolicy.ALWAYS, 0)) {
+            for (PriceBar logged : List.of(applied, bar)) {
+                ByteBuffer rows = filestore.adapter.allocate(1);
+                filestore.adapter.toByteBuffer(List.of(logged), rows);
+                wal.commit(wal.append(LogRecord.Kind.APPEND, symbol, 20220103L, 1, rows.flip()));
+            }
+        }
+
+        try (FileStore<PriceBar> recovered = new FileStore<>(new SimpleDataAdapter(), getOptions())) {
+            List<PriceBar> replayed = recovered.read(symbol, 20220103L);
+            Assertions.assertEquals(n + 2, replayed.size());
+            Assertions.assertEquals(bar.getId(), replayed.get(n + 1).getId());
+            Assertions.assertEquals(bar.getOpen(), replayed.get(n + 1).getOpen());
+        }
+    }
+
+    @Test
+    public void recoverInterruptedShift() throws IOException {
+        writeTestRecords(20220103L, 0, false);
+        writeTestRecords(20220105L, getTestRecordCount(), false);
+        Path datapath = Path.of(filestore.adapter.getDataFilePath(symbol));
+        List<Path> indexpaths = List.of(Path.of(filestore.index.getIndexFilePath(symbol)), Path.of(filestore.index.getJournalFilePath(symbol)));
+        List<byte[]> indexes = new ArrayList<>();
+        for (Path path : indexpaths) {
+            indexes.add(Files.exists(path) ? Files.readAllBytes(path) : null);
+        }
+        byte[] unshifted = Files.readAllBytes(datapath);
+
+        // inserting a day between the two moves the later one along the file
+        writeTestRecords(20220104L, 2 * getTestRecordCount(), false);
+        Path walpath = WriteAheadLog.getPath(filestore.adapter);
+        byte[] logged = Files.readAllBytes(walpath);
+        byte[] shifted = Files.readAllBytes(datapath);
+        filestore.close();
+
+        // a crash half way through the shift, before the index was persisted
+        long tailoffset = filestore.adapter.getRecordSizeBytes(getTestRecordCount());
+        byte[] torn = Arrays.copyOf(unshifted, unshifted.length);
+        int half = (int) (tailoffset + (shifted.length - tailoffset) / 2);
+        System.arraycopy(shifted, (int) tailoffset, torn, (int) tailoffset, half - (int) tailoffset);
+        Files.write(datapath, torn);
+        for (int i = 0; i < indexpaths.size(); i++) {
+            if (indexes.get(i) == null) {
+                Files.deleteIfExists(indexpaths.get(i));
+            } else {
+                Files.write(indexpaths.get(i), indexes.get(i));
+            }
+        }
+        Files.write(walpath, logged);
+
+        try (FileStore<PriceBar> recovered = new FileStore<>(new SimpleDataAdapter(), getOptions())) {
+            testRecords.sort(null);
+            List<PriceBar> replayed = recovered.read(symbol, 20220103L, 20220105L);
+            Assertions.assertEquals(testRecords.size(), replayed.size());
+            for (int i = 0; i < replayed.size(); i++) {
+                Assertions.assertEquals(testRecords.get(i).getId(), replayed.get(i).getId());
+                Assertions.assertEquals(testRecords.get(i).getOpen(), replayed.get(i).getOpen());
+            }
+            Assertions.assertArrayEquals(shifted, Files.readAllBytes(datapath));
+            Assertions.assertTrue(recovered.verifyIntegrity(symbol).isEmpty());
+        }
+    }
+
+    @Test
+    public void appendCheckpoints() throws IOException {
+        int n = getTestRecordCount();
+        filestore.close();
+
+        // a one byte threshold checkpoints after every append, which must not wait on the append's own locks
+        long date = 20220103L;
+        for (SyncPolicy policy : List.of(SyncPolicy.OS, SyncPolicy.INTERVAL, SyncPolicy.ALWAYS)) {
+            FileStoreOptions options = getOptions();
+            options.setSyncPolicy(policy);
+            options.setSyncCheckpointBytes(1);
+            long day = date++;
+            try (FileStore<PriceBar> store = new FileStore<>(new SimpleDataAdapter(), options)) {
+                Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                    for (int i = 0; i < n; i++) {
+                        store.append(symbol, day, new ArrayList<>(List.of(generateRandomizedRecord(symbol, day, i))));
+                    }
+                }, policy.name());
+                Assertions.assertEquals(n, store.read(symbol, day).size(), policy.name());
+                Assertions.assertEquals(0, store.getWriteAheadLog().orElseThrow().getSize(), policy.name());
+            }
+        }
+    }
+
+    @Test
+    public void logIsExclusive() {
+        Assertions.assertThrows(UncheckedIOException.class, () -> new FileStore<>(new SimpleDataAdapter(), getOptions()));
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.adamhedges.financial.storage;
 
+import com.adamhedges.financial.storage.exceptions.FileStoreIntegrityException;
 import org.junit.jupiter.api.Assertions;
 
 import java.io.IOException;
@@ -8,7 +9,10 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.IntStream;
 
 public abstract class TestFileStore<T extends Comparable<T>> {
@@ -25,11 +29,15 @@ public abstract class TestFileStore<T extends Comparable<T>> {
     private final DataAdapter<T> adapter;
 
     public TestFileStore(String symbol, DataAdapter<T> adapter) {
+        this(symbol, adapter, new FileStoreOptions());
+    }
+
+    public TestFileStore(String symbol, DataAdapter<T> adapter, FileStoreOptions options) {
         this.symbol = symbol;
         this.adapter = adapter;
-        this.filestore = new FileStore<>(this.adapter);
+        this.filestore = new FileStore<>(this.adapter, options);
         this.datapath = this.filestore.adapter.getDataFilePath(this.symbol);
-        this.indexpath = this.filestore.adapter.getIndexFilePath(this.symbol);
+        this.indexpath = this.filestore.index.getIndexFilePath(this.symbol);
     }
 
     protected void setup() {
@@ -40,6 +48,7 @@ public abstract class TestFileStore<T extends Comparable<T>> {
     protected void teardown() throws IOException {
         Files.deleteIfExists(Paths.get(datapath));
         Files.deleteIfExists(Paths.get(indexpath));
+        Files.deleteIfExists(Paths.get(filestore.index.getJournalFilePath(symbol)));
     }
 
     protected void writeTestRecords(long date, int start, boolean skipRecordGen) {
@@ -204,4 +213,79 @@ public abstract class TestFileStore<T extends Comparable<T>> {
         }
     }
 
+    protected void TestFileStore_checkIntegrity() throws FileStoreIntegrityException {
+        int n = getTestRecordCount();
+        writeTestRecords(20220103L, 0, false);
+        writeTestRecords(20220105L, n, false);
+        writeTestRecords(20220104L, n * 2, false);
+        filestore.checkIntegrity(symbol);
+    }
+
+    protected void TestFileStore_writeBatch() throws IOException {
+        int n = getTestRecordCount();
+        long date1 = 20220103L;
+        long date2 = 20220104L;
+        long date3 = 20220105L;
+        long date4 = 20220106L;
+
+        List<T> buffer1 = new ArrayList<>();
+        IntStream.range(0, n).forEach(i -> buffer1.add(generateRandomizedRecord(symbol, date1, i)));
+
+        List<T> buffer2 = new ArrayList<>();
+        IntStream.range(0, n).forEach(i -> buffer2.add(generateRandomizedRecord(symbol, date2, i)));
+
+        List<T> buffer3 = new ArrayList<>();
+        IntStream.range(0, n).forEach(i -> buffer3.add(generateRandomizedRecord(symbol, date3, i)));
+
+        List<T> buffer4 = new ArrayList<>();
+        IntStream.range(0, n).forEach(i -> buffer4.add(generateRandomizedRecord(symbol, date4, i)));
+
+        filestore.write(symbol, date1, buffer1);
+        filestore.write(symbol, date3, buffer3);
+
+        // insert before, replace with more records and append after in one batch
+        List<T> newBuffer3 = new ArrayList<>(buffer3);
+        IntStream.range(0, 3).forEach(i -> newBuffer3.add(generateRandomizedRecord(symbol, date3, i + n)));
+        filestore.writeBatch(symbol, Map.of(date2, buffer2, date3, newBuffer3, date4, buffer4));
+
+        testRecords.clear();
+        testRecords.addAll(buffer1);
+        testRecords.addAll(buffer2);
+        testRecords.addAll(newBuffer3);
+        testRecords.addAll(buffer4);
+
+        filestore.index.remove(symbol);
+        List<T> output = filestore.read(symbol, date1, date4);
+        Assertions.assertEquals(testRecords.size(), output.size(), "Record count mismatch");
+        for (int i = 0; i < testRecords.size(); i++) {
+            Assertions.assertEquals(testRecords.get(i), output.get(i), "Records not equal");
+        }
+    }
+
+    protected void TestFileStore_cursor() {
+        int n = getTestRecordCount();
+        long date1 = 20220103L;
+        long date2 = 20220104L;
+        long date3 = 20220105L;
+        writeTestRecords(date1, 0, false);
+        writeTestRecords(date2, n, false);
+        writeTestRecords(date3, n * 2, false);
+
+        List<T> output = new ArrayList<>();
+        try (FileStoreCursor<T> cursor = filestore.cursor(symbol, date1, date2, 3)) {
+            cursor.forEachRemaining(output::add);
+        }
+        Assertions.assertEquals(testRecords.subList(0, n * 2), output);
+
+        try (Stream<T> stream = filestore.stream(symbol, date2, date3)) {
+            Assertions.assertEquals(testRecords.subList(n, n * 3), stream.collect(Collectors.toList()));
+        }
+
+        try (Stream<T> stream = filestore.stream(symbol, date1, date3)) {
+            Assertions.assertEquals(testRecords.subList(0, 2), stream.limit(2).collect(Collectors.toList()));
+        }
+
+        Assertions.assertFalse(filestore.cursor(symbol, 20220102L, date3).hasNext());
+    }
+
 }
@@ -0,0 +1,15 @@
+package com.adamhedges.financial.storage;
+
+public class TestJournaledFileStore extends TestPriceBarFileStore {
+
+    private static FileStoreOptions getOptions() {
+        FileStoreOptions options = new FileStoreOptions();
+        options.setIndexJournalEntries(4);
+        return options;
+    }
+
+    public TestJournaledFileStore() {
+        super("TSTJRN", getOptions());
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.adamhedges.financial.storage;
+
+public class TestMappedFileStore extends TestPriceBarFileStore {
+
+    private static FileStoreOptions getOptions() {
+        FileStoreOptions options = new FileStoreOptions();
+        options.setMappedReads(true);
+        return options;
+    }
+
+    public TestMappedFileStore() {
+        super("TSTMAP", getOptions());
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.adamhedges.financial.storage;
+
+public class TestPooledFileStore extends TestPriceBarFileStore {
+
+    private static FileStoreOptions getOptions() {
+        FileStoreOptions options = new FileStoreOptions();
+        options.setMaxOpenFiles(2);
+        return options;
+    }
+
+    public TestPooledFileStore() {
+        super("TSTPOL", getOptions());
+    }
+
+}
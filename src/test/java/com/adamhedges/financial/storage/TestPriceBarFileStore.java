@@ -0,0 +1,159 @@
+package com.adamhedges.financial.storage;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.financial.storage.exceptions.FileStoreIntegrityException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public abstract class TestPriceBarFileStore extends TestFileStore<PriceBar> {
+
+    protected TestPriceBarFileStore(String symbol, FileStoreOptions options) {
+        super(symbol, new SimpleDataAdapter(), options);
+    }
+
+    @Override
+    protected int getTestRecordCount() {
+        return 10;
+    }
+
+    @Override
+    protected PriceBar generateRandomizedRecord(String symbol, long date, int i) {
+        PriceBar bar = new PriceBar(symbol, date, 930 + i);
+        bar.setOpen(random.nextDouble() * 100);
+        return bar;
+    }
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        teardown();
+        setup();
+    }
+
+    @AfterEach
+    public void afterEach() throws IOException {
+        teardown();
+    }
+
+    @Test
+    public void basicIO() {
+        TestFileStore_basicIO();
+    }
+
+    @Test
+    public void newDateAppend() {
+        TestFileStore_newDateAppend();
+    }
+
+    @Test
+    public void newDateInsert() {
+        TestFileStore_newDateInsert();
+    }
+
+    @Test
+    public void existingDateOverride() {
+        TestFileStore_existingDateOverride();
+    }
+
+    @Test
+    public void existingDateAddRecords() {
+        TestFileStore_existingDateAddRecords();
+    }
+
+    @Test
+    public void existingDateRemoveRecords() {
+        TestFileStore_existingDateRemoveRecords();
+    }
+
+    @Test
+    public void delete() {
+        TestFileStore_delete();
+    }
+
+    @Test
+    public void checkIntegrity() throws FileStoreIntegrityException {
+        TestFileStore_checkIntegrity();
+    }
+
+    @Test
+    public void cursor() {
+        TestFileStore_cursor();
+    }
+
+    @Test
+    public void writeBatch() throws IOException {
+        TestFileStore_writeBatch();
+    }
+
+    @Test
+    public void readColumn() throws IOException {
+        int n = getTestRecordCount();
+        writeTestRecords(20220103L, 0, false);
+        writeTestRecords(20220105L, n, false);
+        writeTestRecords(20220104L, n * 2, false);
+        Collections.sort(testRecords);
+
+        ByteBuffer opens = filestore.readColumn(symbol, 20220103L, 20220105L, 1);
+        ByteBuffer ids = filestore.readColumn(symbol, 20220104L, 20220105L, 0);
+
+        Assertions.assertEquals(n * 3, opens.remaining() / 8);
+        Assertions.assertEquals(n * 2, ids.remaining() / 8);
+        for (int i = 0; i < n * 3; i++) {
+            PriceBar bar = testRecords.get(i);
+            Assertions.assertEquals(bar.getOpen(), opens.getDouble());
+            if (i >= n) {
+                Assertions.assertEquals(bar.getId(), ids.getLong());
+            }
+        }
+    }
+
+    @Test
+    public void readTimeRange() {
+        int n = getTestRecordCount();
+        writeTestRecords(20220103L, 0, false);
+        writeTestRecords(20220104L, n, false);
+        writeTestRecords(20220105L, n * 2, false);
+        Collections.sort(testRecords);
+
+        // records run from 930 to 939 each day
+        List<PriceBar> output = filestore.read(symbol, 20220103L, 20220105L, 932, 935);
+        List<PriceBar> expected = testRecords.stream().filter(bar -> bar.getTime() >= 932 && bar.getTime() < 935).toList();
+        Assertions.assertEquals(9, output.size());
+        Assertions.assertEquals(expected, output);
+
+        Assertions.assertEquals(testRecords.subList(n, n * 2), filestore.read(symbol, 20220104L, 20220104L, 0, 2400));
+        Assertions.assertEquals(1, filestore.read(symbol, 20220105L, 20220105L, 939, 940).size());
+        Assertions.assertTrue(filestore.read(symbol, 20220103L, 20220105L, 1000, 1100).isEmpty());
+        Assertions.assertTrue(filestore.read(symbol, 20220103L, 20220105L, 935, 935).isEmpty());
+    }
+
+    @Test
+    public void appendToDay() throws IOException {
+        int n = getTestRecordCount();
+        writeTestRecords(20220103L, 0, false);
+        writeTestRecords(20220104L, n, false);
+
+        // later bars for the last day extend its block; bars for an earlier day rewrite that day
+        List<PriceBar> late = new ArrayList<>(List.of(generateRandomizedRecord(symbol, 20220104L, n), generateRandomizedRecord(symbol, 20220104L, n + 1)));
+        filestore.append(symbol, 20220104L, late);
+        List<PriceBar> early = new ArrayList<>(List.of(generateRandomizedRecord(symbol, 20220103L, n)));
+        filestore.append(symbol, 20220103L, early);
+        testRecords.addAll(late);
+        testRecords.addAll(early);
+        Collections.sort(testRecords);
+
+        Assertions.assertEquals(n + 1, filestore.read(symbol, 20220103L).size());
+        Assertions.assertEquals(n + 2, filestore.read(symbol, 20220104L).size());
+        Assertions.assertEquals(testRecords, filestore.read(symbol, 20220103L, 20220104L));
+        // the rewritten day's old block left behind by append-only stores is dead space, not an issue
+        Assertions.assertTrue(filestore.verifyIntegrity(symbol).isEmpty());
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.adamhedges.financial.storage.buffers;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+// contention benchmark of AggregateBuffer against RingAggregateBuffer: several feed threads set bars while one thread consumes them
+// not a unit test; run main with optional arguments: bars per producer, repetitions
+public class AggregateBufferBenchmark {
+
+    private interface Consumer {
+        // takes whatever bars are waiting and returns how many it took
+        int consume();
+    }
+
+    private interface Producer {
+        void set(PriceBar bar);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int bars = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        System.out.printf("%-10s %10s %16s %16s%n", "producers", "bars", "AggregateBuffer", "RingAggregate");
+        for (int producers : new int[] { 1, 2, 4, 8 }) {
+            PriceBar[][] feeds = getFeeds(producers, bars);
+
+            double locked = Double.MAX_VALUE;
+            double ring = Double.MAX_VALUE;
+            for (int r = 0; r < repetitions; r++) {
+                AggregateBuffer aggregate = new AggregateBuffer("BENCH");
+                locked = Math.min(locked, run(feeds, aggregate::set, () -> aggregate.getNext().isPresent() ? 1 : 0));
+
+                RingAggregateBuffer buffer = new RingAggregateBuffer("BENCH", 4096);
+                ring = Math.min(ring, run(feeds, bar -> {
+                    // a full ring waits for the consumer rather than dropping, so both runs deliver every bar
+                    while (!buffer.set(bar)) {
+                        Thread.yield();
+                    }
+                }, () -> buffer.drainTo(bar -> { }, 256)));
+            }
+
+            System.out.printf("%-10s %10s %13.1f ns %13.1f ns%n", producers, producers * bars, locked, ring);
+        }
+    }
+
+    private static PriceBar[][] getFeeds(int producers, int bars) {
+        PriceBar[][] feeds = new PriceBar[producers][bars];
+        for (int p = 0; p < producers; p++) {
+            for (int i = 0; i < bars; i++) {
+                PriceBar bar = new PriceBar("BENCH", 20240102L, 930);
+                bar.setVolume(i);
+                feeds[p][i] = bar;
+            }
+        }
+        return feeds;
+    }
+
+    // nanoseconds per bar from the first set until the consumer has taken every bar
+    private static double run(PriceBar[][] feeds, Producer producer, Consumer consumer) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (PriceBar[] feed : feeds) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                for (PriceBar bar : feed) {
+                    producer.set(bar);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        long total = (long) feeds.length * feeds[0].length;
+        long received = 0;
+        long startNanos = System.nanoTime();
+        start.countDown();
+        while (received < total) {
+            int n = consumer.consume();
+            if (n == 0) {
+                Thread.yield();
+            }
+            received += n;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return (double) elapsed / total;
+    }
+
+}
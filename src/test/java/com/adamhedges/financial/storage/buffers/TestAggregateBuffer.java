@@ -1,10 +1,17 @@
 package com.adamhedges.financial.storage.buffers;
 
 import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.financial.storage.FileStore;
+import com.adamhedges.financial.storage.SimpleDataAdapter;
+import com.adamhedges.financial.storage.index.IndexNode;
 import com.adamhedges.utilities.datetime.DateUtilities;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.ZonedDateTime;
 import java.util.Optional;
 
@@ -48,4 +55,57 @@ public class TestAggregateBuffer {
         Assertions.assertEquals(930, peekBar.get().getTime());
     }
 
+    @Test
+    public void TestAggregateBuffer_sink() throws IOException {
+        FileStore<PriceBar> filestore = new FileStore<>(new SimpleDataAdapter());
+        try (FileStoreSink sink = new FileStoreSink(filestore, "TSTSNK", 2)) {
+            AggregateBuffer buffer = new AggregateBuffer("TSTSNK", null, sink);
+            for (int i = 0; i < 5; i++) {
+                buffer.set(new PriceBar("TSTSNK", 20240122L, 930 + i));
+                buffer.getNext();
+            }
+            Assertions.assertEquals(1, sink.getPendingBars());
+
+            // a new day flushes what is left of the previous one
+            buffer.set(new PriceBar("TSTSNK", 20240123L, 930));
+            buffer.getNext();
+            Assertions.assertEquals(5, filestore.read("TSTSNK", 20240122L).size());
+        }
+
+        // the day grew in place: one block, and no bytes beyond the records
+        Assertions.assertEquals(new IndexNode(20240122L, 0, 5), filestore.index.lookup("TSTSNK", 20240122L).orElseThrow());
+        Assertions.assertEquals(1, filestore.read("TSTSNK", 20240123L).size());
+        Assertions.assertEquals(16 * 6, Files.size(Paths.get(filestore.adapter.getDataFilePath("TSTSNK"))));
+
+        Files.deleteIfExists(Paths.get(filestore.adapter.getDataFilePath("TSTSNK")));
+        Files.deleteIfExists(Paths.get(filestore.index.getIndexFilePath("TSTSNK")));
+    }
+
+    @Test
+    public void TestAggregateBuffer_sinkKeepsFailedBars() throws IOException {
+        FileStore<PriceBar> filestore = new FileStore<>(new SimpleDataAdapter());
+        Path datapath = Paths.get(filestore.adapter.getDataFilePath("TSTSNF"));
+        Files.deleteIfExists(datapath);
+        Files.deleteIfExists(Paths.get(filestore.index.getIndexFilePath("TSTSNF")));
+
+        // a directory in place of the data file makes every append fail
+        Files.createDirectories(datapath);
+        FileStoreSink sink = new FileStoreSink(filestore, "TSTSNF");
+        sink.accept(new PriceBar("TSTSNF", 20240122L, 930));
+        sink.accept(new PriceBar("TSTSNF", 20240123L, 930));
+        Assertions.assertEquals(2, sink.getPendingBars());
+        Assertions.assertTrue(sink.getLastError().isPresent());
+        Assertions.assertThrows(IOException.class, sink::close);
+
+        Files.delete(datapath);
+        sink.close();
+        Assertions.assertEquals(0, sink.getPendingBars());
+        Assertions.assertTrue(sink.getLastError().isEmpty());
+        Assertions.assertEquals(1, filestore.read("TSTSNF", 20240122L).size());
+        Assertions.assertEquals(1, filestore.read("TSTSNF", 20240123L).size());
+
+        Files.deleteIfExists(datapath);
+        Files.deleteIfExists(Paths.get(filestore.index.getIndexFilePath("TSTSNF")));
+    }
+
 }
@@ -0,0 +1,51 @@
+package com.adamhedges.financial.storage.buffers;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public class TestResamplingBuffer {
+
+    private PriceBar getBar(int time, double price) {
+        PriceBar bar = new PriceBar("TEST", 20240122L, time);
+        bar.setOpen(price);
+        bar.setHigh(price);
+        bar.setLow(price);
+        bar.setClose(price);
+        bar.setVolume(100);
+        return bar;
+    }
+
+    @Test
+    public void TestResamplingBuffer_overAggregateBuffer() {
+        AggregateBuffer source = new AggregateBuffer("TEST");
+        ResamplingBuffer buffer = new ResamplingBuffer("TEST", source, 5);
+        Instant now = Instant.now();
+
+        for (int time = 930; time < 934; time++) {
+            source.set(getBar(time, time));
+        }
+        Assertions.assertTrue(buffer.getNext(now).isEmpty());
+
+        // the last minute of the interval completes it
+        source.set(getBar(934, 934));
+        Optional<PriceBar> bar = buffer.getNext(now);
+        Assertions.assertTrue(bar.isPresent());
+        Assertions.assertEquals(930, bar.get().getTime());
+        Assertions.assertEquals(930, bar.get().getOpen());
+        Assertions.assertEquals(934, bar.get().getHigh());
+        Assertions.assertEquals(934, bar.get().getClose());
+        Assertions.assertEquals(500, bar.get().getVolume());
+
+        source.set(getBar(935, 935));
+        Assertions.assertTrue(buffer.getNext(now).isEmpty());
+        buffer.flush();
+        Assertions.assertEquals(935, buffer.getNext(now).orElseThrow().getTime());
+        Assertions.assertEquals(930, buffer.getPrev().orElseThrow().getTime());
+        Assertions.assertEquals(2, buffer.getIndex());
+    }
+
+}
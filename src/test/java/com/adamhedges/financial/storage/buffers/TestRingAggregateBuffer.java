@@ -0,0 +1,101 @@
+package com.adamhedges.financial.storage.buffers;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.utilities.datetime.DateUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestRingAggregateBuffer {
+
+    private PriceBar getBar(ZonedDateTime timestamp, double basisPrice, long volume) {
+        PriceBar bar = new PriceBar("TEST", basisPrice, timestamp.toInstant());
+        bar.setVolume(volume);
+        return bar;
+    }
+
+    @Test
+    public void TestRingAggregateBuffer_setBar() {
+        RingAggregateBuffer buffer = new RingAggregateBuffer("TEST", 2);
+
+        ZonedDateTime date = ZonedDateTime.of(2024, 1, 22, 9, 30, 0, 0, DateUtilities.EASTERN_TIMEZONE);
+        PriceBar bar1 = getBar(date, 10.0, 100);
+        PriceBar bar2 = getBar(date, 11.0, 50);
+
+        Assertions.assertTrue(buffer.set(bar1));
+        Assertions.assertTrue(buffer.set(bar2));
+        Assertions.assertFalse(buffer.set(getBar(date, 12.0, 10)));
+        Assertions.assertEquals(2, buffer.getSize());
+
+        Optional<PriceBar> bar = buffer.getNext();
+        Assertions.assertTrue(bar.isPresent());
+        Assertions.assertEquals(bar1.getClose(), bar.get().getClose());
+        Assertions.assertEquals(1, buffer.getSize());
+
+        List<PriceBar> drained = new ArrayList<>();
+        Assertions.assertEquals(1, buffer.drainTo(drained::add));
+        Assertions.assertEquals(bar2.getClose(), drained.get(0).getClose());
+        Assertions.assertEquals(0, buffer.getSize());
+        Assertions.assertTrue(buffer.getNext().isEmpty());
+
+        Assertions.assertEquals(bar1.getClose(), buffer.getPrev().orElseThrow().getClose());
+        Assertions.assertEquals(bar2.getClose(), buffer.getLastBar().getClose());
+        Assertions.assertEquals(930, buffer.peek().orElseThrow().getTime());
+    }
+
+    @Test
+    public void TestRingAggregateBuffer_concurrentProducers() {
+        int producers = 4;
+        int bars = 2000;
+        MpscRingBuffer<long[]> buffer = new MpscRingBuffer<>(64);
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int p = 0; p < producers; p++) {
+                    long producer = p;
+                    futures.add(executor.submit(() -> {
+                        for (long i = 0; i < bars; i++) {
+                            // yield rather than spin, so the consumer gets the CPU even on a single core
+                            while (!buffer.offer(new long[] { producer, i })) {
+                                Thread.yield();
+                            }
+                        }
+                    }));
+                }
+
+                // every element arrives exactly once and each producer's elements stay in order
+                long[] expected = new long[producers];
+                int received = 0;
+                while (received < producers * bars) {
+                    int drained = buffer.drainTo(element -> {
+                        Assertions.assertEquals(expected[(int) element[0]], element[1]);
+                        expected[(int) element[0]]++;
+                    }, 16);
+                    if (drained == 0) {
+                        Thread.yield();
+                    }
+                    received += drained;
+                }
+
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            });
+            Assertions.assertEquals(0, buffer.size());
+            Assertions.assertNull(buffer.poll());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.adamhedges.financial.storage.cache;
+
+import com.adamhedges.financial.storage.index.IndexNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class TestBlockCache {
+
+    @Test
+    public void TestBlockCache_eviction() {
+        BlockCache<Integer> cache = new BlockCache<>(20);
+        IndexNode first = new IndexNode(20220103L, 0, 2);
+        IndexNode second = new IndexNode(20220104L, 20, 2);
+        IndexNode third = new IndexNode(20220105L, 40, 2);
+
+        cache.put("TST", first, List.of(1, 2), 10);
+        cache.put("TST", second, List.of(3, 4), 10);
+        Assertions.assertEquals(List.of(1, 2), cache.get("TST", first));
+
+        // the second block is now least recently used
+        cache.put("TST", third, List.of(5, 6), 10);
+        Assertions.assertEquals(1, cache.getEvictions());
+        Assertions.assertEquals(20, cache.getSizeBytes());
+        Assertions.assertNull(cache.get("TST", second));
+        Assertions.assertNotNull(cache.get("TST", third));
+
+        // a count that no longer matches the index is a miss
+        Assertions.assertNull(cache.get("TST", new IndexNode(20220103L, 0, 3)));
+        Assertions.assertEquals(2, cache.getHits());
+        Assertions.assertEquals(2, cache.getMisses());
+
+        cache.invalidate("TST");
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertEquals(0, cache.getSizeBytes());
+    }
+
+}
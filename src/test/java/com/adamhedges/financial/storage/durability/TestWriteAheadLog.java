@@ -0,0 +1,107 @@
+package com.adamhedges.financial.storage.durability;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class TestWriteAheadLog {
+
+    private final Path path = Path.of(System.getProperty("java.io.tmpdir"), "TestWriteAheadLog.wal");
+
+    private static ByteBuffer getRows(long id) {
+        return ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN).putLong(id).putDouble(1.5).flip();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void TestWriteAheadLog_readStopsAtTornRecord() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(path, SyncPolicy.OS, 0)) {
+            wal.append("TSTWAL", 20220103L, 1, getRows(1));
+            wal.append(LogRecord.Kind.APPEND, "TSTWAL", 20220104L, 1, getRows(2));
+        }
+
+        // half of a third record
+        Files.write(path, new byte[] { 40, 0, 0, 0, 1, 2, 3, 4, 5 }, StandardOpenOption.APPEND);
+
+        List<LogRecord> records = WriteAheadLog.read(path);
+        Assertions.assertEquals(2, records.size());
+        Assertions.assertEquals(LogRecord.Kind.WRITE, records.get(0).getKind());
+        Assertions.assertEquals(LogRecord.Kind.APPEND, records.get(1).getKind());
+        Assertions.assertEquals("TSTWAL", records.get(1).getSymbol());
+        Assertions.assertEquals(20220104L, records.get(1).getDate());
+        Assertions.assertEquals(1, records.get(1).getCount());
+        Assertions.assertEquals(2, records.get(1).getRows().getLong());
+    }
+
+    @Test
+    public void TestWriteAheadLog_readStopsAtZeroFilledTail() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(path, SyncPolicy.OS, 0)) {
+            wal.append("TSTWAL", 20220103L, 1, getRows(1));
+        }
+
+        // preallocated or zeroed blocks after a crash look like an empty record with a valid checksum
+        Files.write(path, new byte[16], StandardOpenOption.APPEND);
+        Assertions.assertEquals(1, WriteAheadLog.read(path).size());
+
+        Files.write(path, new byte[16]);
+        Assertions.assertTrue(WriteAheadLog.read(path).isEmpty());
+    }
+
+    @Test
+    public void TestWriteAheadLog_groupCommit() throws Exception {
+        int threads = 8;
+        int writes = 20;
+
+        // every writer appends before any commits, so the first commit's fsync covers the whole round
+        CyclicBarrier appended = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (WriteAheadLog wal = new WriteAheadLog(path, SyncPolicy.ALWAYS, 0)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < writes; i++) {
+                        long position = wal.append("TSTWAL", 20220103L, 1, getRows(i));
+                        appended.await();
+                        wal.commit(position);
+                        appended.await();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+
+            Assertions.assertEquals(threads * writes, wal.getCommits().get());
+            Assertions.assertEquals(threads * writes, wal.getSyncedRecords().get());
+            Assertions.assertTrue(wal.getSyncs().get() < wal.getCommits().get());
+            Assertions.assertEquals(writes, wal.getSyncs().get());
+            Assertions.assertEquals(threads, wal.getAverageBatchSize());
+
+            wal.truncate();
+            Assertions.assertEquals(0, wal.getSize());
+            Assertions.assertTrue(WriteAheadLog.read(path).isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
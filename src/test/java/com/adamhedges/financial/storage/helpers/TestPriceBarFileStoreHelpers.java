@@ -0,0 +1,102 @@
+package com.adamhedges.financial.storage.helpers;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.financial.storage.FileStore;
+import com.adamhedges.financial.storage.SimpleDataAdapter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestPriceBarFileStoreHelpers {
+
+    private static final String symbol = "TSTHLP";
+    private static final long[] dates = { 20220103L, 20220104L, 20220105L };
+    private static final int numRecords = 10;
+    private static final FileStore<PriceBar> filestore = new FileStore<>(new SimpleDataAdapter());
+
+    private static final String datapath = filestore.adapter.getDataFilePath(symbol);
+    private static final String indexpath = filestore.adapter.getIndexFilePath(symbol);
+
+    @BeforeAll
+    public static void setup() {
+        for (long date : dates) {
+            List<PriceBar> items = new ArrayList<>();
+            for (int i = 0; i < numRecords; i++) {
+                PriceBar bar = new PriceBar(symbol, date, i + 930);
+                bar.setOpen(i);
+                items.add(bar);
+            }
+            filestore.write(symbol, date, items);
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() throws IOException {
+        Files.deleteIfExists(Paths.get(datapath));
+        Files.deleteIfExists(Paths.get(indexpath));
+    }
+
+    @Test
+    public void TestPriceBarFileStoreHelpers_readColumns() throws IOException {
+        PriceBarColumns columns = new PriceBarColumns(4);
+
+        PriceBarFileStoreHelpers.read(filestore, symbol, dates[0], dates[2], columns);
+        Assertions.assertEquals(numRecords * dates.length, columns.getSize());
+        int capacity = columns.getCapacity();
+
+        for (int i = 0; i < columns.getSize(); i++) {
+            Assertions.assertEquals(dates[i / numRecords], columns.getDates()[i]);
+            Assertions.assertEquals(930 + i % numRecords, columns.getTimes()[i]);
+            Assertions.assertEquals(i % numRecords, columns.getOpens()[i]);
+        }
+
+        // a second read reuses the same arrays
+        PriceBarFileStoreHelpers.read(filestore, symbol, dates[1], dates[1], columns);
+        Assertions.assertEquals(numRecords, columns.getSize());
+        Assertions.assertEquals(capacity, columns.getCapacity());
+        Assertions.assertEquals(dates[1], columns.getDates()[0]);
+    }
+
+    @Test
+    public void TestPriceBarFileStoreHelpers_backfillAcrossDays() {
+        // spans the last day and part of the one before it
+        List<PriceBar> bars = PriceBarFileStoreHelpers.getBackfillBars(filestore, symbol, numRecords + 4);
+        Assertions.assertEquals(numRecords + 4, bars.size());
+        Assertions.assertEquals(dates[1], bars.get(0).getDate());
+        Assertions.assertEquals(930 + numRecords - 4, bars.get(0).getTime());
+        Assertions.assertEquals(dates[2], bars.get(bars.size() - 1).getDate());
+        Assertions.assertEquals(930 + numRecords - 1, bars.get(bars.size() - 1).getTime());
+
+        // only days strictly before beforeDate
+        bars = PriceBarFileStoreHelpers.getBackfillBars(filestore, symbol, numRecords + 4, dates[2]);
+        Assertions.assertEquals(numRecords + 4, bars.size());
+        Assertions.assertEquals(dates[0], bars.get(0).getDate());
+        Assertions.assertEquals(dates[1], bars.get(bars.size() - 1).getDate());
+
+        // more bars than exist returns everything available
+        bars = PriceBarFileStoreHelpers.getBackfillBars(filestore, symbol, 1000, dates[1]);
+        Assertions.assertEquals(numRecords, bars.size());
+
+        Assertions.assertTrue(PriceBarFileStoreHelpers.getBackfillBars(filestore, symbol, 5, dates[0]).isEmpty());
+    }
+
+    @Test
+    public void TestPriceBarFileStoreHelpers_resample() throws IOException {
+        // 10 minutes from 9:30 per day become two 5-minute bars per day
+        List<PriceBar> bars = PriceBarFileStoreHelpers.resample(filestore, symbol, dates[0], dates[2], 5);
+        Assertions.assertEquals(dates.length * 2, bars.size());
+        for (int i = 0; i < bars.size(); i++) {
+            Assertions.assertEquals(dates[i / 2], bars.get(i).getDate());
+            Assertions.assertEquals(i % 2 == 0 ? 930 : 935, bars.get(i).getTime());
+            Assertions.assertEquals(i % 2 == 0 ? 0 : 5, bars.get(i).getOpen());
+        }
+    }
+
+}
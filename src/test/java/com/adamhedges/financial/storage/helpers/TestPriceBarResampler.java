@@ -0,0 +1,73 @@
+package com.adamhedges.financial.storage.helpers;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestPriceBarResampler {
+
+    private static final String symbol = "TSTRSM";
+
+    @Test
+    public void TestPriceBarResampler_fiveMinute() {
+        List<PriceBar> bars = new ArrayList<>();
+        PriceBarResampler resampler = new PriceBarResampler(symbol, 5, bars::add);
+
+        // 9:30 through 9:41, skipping 9:37
+        for (int time = 930; time < 942; time++) {
+            if (time != 937) {
+                resampler.add(20220103L, time, time, time + 0.5, time - 0.5, time + 0.25, 10);
+            }
+        }
+
+        // the 9:35 bar completes on its last minute even with a gap, 9:40 waits for more data
+        Assertions.assertEquals(2, bars.size());
+        Assertions.assertEquals(930, bars.get(0).getTime());
+        Assertions.assertEquals(930, bars.get(0).getOpen());
+        Assertions.assertEquals(934.5, bars.get(0).getHigh());
+        Assertions.assertEquals(929.5, bars.get(0).getLow());
+        Assertions.assertEquals(934.25, bars.get(0).getClose());
+        Assertions.assertEquals(50, bars.get(0).getVolume());
+        Assertions.assertEquals(935, bars.get(1).getTime());
+        Assertions.assertEquals(40, bars.get(1).getVolume());
+
+        resampler.flush();
+        Assertions.assertEquals(3, bars.size());
+        Assertions.assertEquals(940, bars.get(2).getTime());
+        Assertions.assertEquals(20, bars.get(2).getVolume());
+    }
+
+    @Test
+    public void TestPriceBarResampler_anchoredAndDaily() {
+        List<PriceBar> hourly = new ArrayList<>();
+        List<PriceBar> daily = new ArrayList<>();
+        PriceBarResampler hours = new PriceBarResampler(symbol, 60, 930, hourly::add);
+        PriceBarResampler days = new PriceBarResampler(symbol, PriceBarResampler.DAILY, daily::add);
+
+        for (long date : new long[] { 20220103L, 20220104L }) {
+            for (int minute = 570; minute < 960; minute++) {
+                int time = (minute / 60) * 100 + minute % 60;
+                hours.add(date, time, 1, 1, 1, 1, 1);
+                days.add(date, time, 1, 1, 1, 1, 1);
+            }
+        }
+        hours.flush();
+        days.flush();
+
+        // 9:30 to 16:00 is six full hours and a half hour per day
+        Assertions.assertEquals(14, hourly.size());
+        Assertions.assertEquals(1030, hourly.get(1).getTime());
+        Assertions.assertEquals(60, hourly.get(1).getVolume());
+        Assertions.assertEquals(1530, hourly.get(6).getTime());
+        Assertions.assertEquals(30, hourly.get(6).getVolume());
+        Assertions.assertEquals(20220104L, hourly.get(7).getDate());
+
+        Assertions.assertEquals(2, daily.size());
+        Assertions.assertEquals(390, daily.get(0).getVolume());
+        Assertions.assertEquals(20220104L, daily.get(1).getDate());
+    }
+
+}
@@ -14,4 +14,20 @@ public class TestDateIndex {
         Assertions.assertFalse(index.isDirty());
     }
 
+    @Test
+    public void TestDateIndex_dirtyDates() {
+        DateIndex index = new DateIndex();
+        index.setDirty(20240102L);
+        Assertions.assertTrue(index.isDirty());
+        Assertions.assertTrue(index.isPartiallyDirty());
+        Assertions.assertTrue(index.getDirtyDates().contains(20240102L));
+
+        index.setDirty();
+        Assertions.assertFalse(index.isPartiallyDirty());
+
+        index.setClean();
+        Assertions.assertFalse(index.isDirty());
+        Assertions.assertTrue(index.getDirtyDates().isEmpty());
+    }
+
 }
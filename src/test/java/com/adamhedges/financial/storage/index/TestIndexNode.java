@@ -3,6 +3,9 @@ package com.adamhedges.financial.storage.index;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 public class TestIndexNode {
 
     @Test
@@ -25,4 +28,16 @@ public class TestIndexNode {
         Assertions.assertEquals("20240101,1024,390", node.toCsv());
     }
 
+    @Test
+    public void TestIndexNode_binary() {
+        IndexNode node = new IndexNode(20240101L, 1024, 390);
+        ByteBuffer buffer = ByteBuffer.allocate(IndexNode.BINARY_SIZE_BYTES * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(0);
+        buffer.putInt(0);
+        buffer.putLong(0);
+        node.toBinary(buffer);
+        Assertions.assertEquals(IndexNode.BINARY_SIZE_BYTES * 2, buffer.position());
+        Assertions.assertEquals(node, IndexNode.fromBinary(buffer, IndexNode.BINARY_SIZE_BYTES));
+    }
+
 }
@@ -0,0 +1,76 @@
+package com.adamhedges.financial.storage.index;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class TestMappedIndex {
+
+    @Test
+    public void TestMappedIndex_search() throws IOException {
+        Path path = Files.createTempFile("index", ".idx");
+        try {
+            IndexFormat.BINARY.write(path, List.of(
+                    new IndexNode(20240102L, 0, 10),
+                    new IndexNode(20240103L, 160, 10),
+                    new IndexNode(20240105L, 320, 10)
+            ));
+
+            MappedIndex index = new MappedIndex(path.toString());
+            Assertions.assertEquals(3, index.size());
+            Assertions.assertEquals(160, index.lookup(20240103L).orElseThrow().getOffset());
+            Assertions.assertTrue(index.lookup(20240104L).isEmpty());
+
+            Assertions.assertEquals(20240102L, index.first().orElseThrow().getDate());
+            Assertions.assertEquals(20240105L, index.last().orElseThrow().getDate());
+
+            Assertions.assertEquals(20240103L, index.prev(20240104L).orElseThrow().getDate());
+            Assertions.assertEquals(20240103L, index.prev(20240105L).orElseThrow().getDate());
+            Assertions.assertTrue(index.prev(20240102L).isEmpty());
+
+            Assertions.assertEquals(20240105L, index.next(20240104L).orElseThrow().getDate());
+            Assertions.assertEquals(20240102L, index.next(20240101L).orElseThrow().getDate());
+            Assertions.assertTrue(index.next(20240105L).isEmpty());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void TestMappedIndex_journalOverlay() throws IOException {
+        Path path = Files.createTempFile("index", ".idx");
+        try {
+            IndexFormat.BINARY.write(path, List.of(
+                    new IndexNode(20240102L, 0, 10),
+                    new IndexNode(20240103L, 160, 10),
+                    new IndexNode(20240105L, 320, 10)
+            ));
+
+            // the journal removes one date, adds another and moves a third
+            DateIndex journaled = new DateIndex();
+            journaled.put(20240103L, new IndexNode(20240103L, 0, 0));
+            journaled.put(20240104L, new IndexNode(20240104L, 160, 5));
+            journaled.put(20240105L, new IndexNode(20240105L, 240, 10));
+
+            MappedIndex index = new MappedIndex(path.toString(), journaled);
+            Assertions.assertTrue(index.lookup(20240103L).isEmpty());
+            Assertions.assertEquals(5, index.lookup(20240104L).orElseThrow().getCount());
+            Assertions.assertEquals(240, index.lookup(20240105L).orElseThrow().getOffset());
+
+            Assertions.assertEquals(20240102L, index.first().orElseThrow().getDate());
+            Assertions.assertEquals(240, index.last().orElseThrow().getOffset());
+
+            Assertions.assertEquals(20240104L, index.next(20240102L).orElseThrow().getDate());
+            Assertions.assertEquals(20240105L, index.next(20240104L).orElseThrow().getDate());
+            Assertions.assertEquals(20240102L, index.prev(20240104L).orElseThrow().getDate());
+            Assertions.assertEquals(20240104L, index.prev(20240105L).orElseThrow().getDate());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+}
@@ -6,6 +6,9 @@ import com.adamhedges.financial.storage.SimpleDataAdapter;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Optional;
 
 public class TestSymbolIndex {
@@ -69,6 +72,23 @@ public class TestSymbolIndex {
         Assertions.assertFalse(prev.isPresent());
     }
 
+    @Test
+    public void TestSymbolIndex_evictsLeastRecent() {
+        DataAdapter<PriceBar> adapter = new SimpleDataAdapter();
+        SymbolIndex<PriceBar> symbolIndex = new SymbolIndex<>(adapter, IndexFormat.CSV, 0, 2, s -> null);
+
+        // a lookup counts as a use, so the untouched symbol is the one evicted
+        symbolIndex.load(symbol);
+        symbolIndex.load("BOGUS1");
+        Assertions.assertTrue(symbolIndex.lookup(symbol, 20240102L).isPresent());
+        symbolIndex.load("BOGUS2");
+
+        Assertions.assertEquals(2, symbolIndex.size());
+        Assertions.assertTrue(symbolIndex.containsKey(symbol));
+        Assertions.assertFalse(symbolIndex.containsKey("BOGUS1"));
+        Assertions.assertTrue(symbolIndex.containsKey("BOGUS2"));
+    }
+
     @Test
     public void TestSymbolIndex_persist() {
         DataAdapter<PriceBar> adapter = new SimpleDataAdapter();
@@ -96,4 +116,183 @@ public class TestSymbolIndex {
         index.persist();
     }
 
+    @Test
+    public void TestSymbolIndex_binaryConversion() throws IOException {
+        DataAdapter<PriceBar> adapter = new SimpleDataAdapter();
+        SymbolIndex<PriceBar> index = new SymbolIndex<>(adapter, IndexFormat.BINARY);
+        String filepath = index.getIndexFilePath(symbol);
+
+        try {
+            Files.deleteIfExists(Paths.get(filepath));
+
+            Optional<IndexNode> node = index.lookup(symbol, 20240102L);
+            Assertions.assertTrue(node.isPresent());
+            Assertions.assertEquals(560, node.get().getOffset());
+            Assertions.assertTrue(Files.exists(Paths.get(filepath)));
+
+            MappedIndex mapped = new MappedIndex(filepath);
+            Assertions.assertEquals(4, mapped.size());
+            Assertions.assertEquals(node, mapped.lookup(20240102L));
+        } finally {
+            Files.deleteIfExists(Paths.get(filepath));
+        }
+    }
+
+    @Test
+    public void TestSymbolIndex_journal() throws IOException {
+        String journalsymbol = "TSTJNL";
+        DataAdapter<PriceBar> adapter = new SimpleDataAdapter();
+        SymbolIndex<PriceBar> index = new SymbolIndex<>(adapter, IndexFormat.CSV, 3);
+        String indexpath = index.getIndexFilePath(journalsymbol);
+        String journalpath = index.getJournalFilePath(journalsymbol);
+
+        try {
+            index.load(journalsymbol);
+            index.get(journalsymbol).put(20240101L, new IndexNode(20240101L, 0, 10));
+            index.get(journalsymbol).put(20240102L, new IndexNode(20240102L, 160, 10));
+            index.get(journalsymbol).setDirty(20240101L);
+            index.get(journalsymbol).setDirty(20240102L);
+            index.persist(journalsymbol);
+
+            // only the journal is written
+            Assertions.assertFalse(Files.exists(Paths.get(indexpath)));
+            Assertions.assertEquals(2, Files.readAllLines(Paths.get(journalpath)).size());
+
+            index.get(journalsymbol).remove(20240101L);
+            index.get(journalsymbol).setDirty(20240101L);
+            index.persist(journalsymbol);
+
+            SymbolIndex<PriceBar> replayed = new SymbolIndex<>(adapter, IndexFormat.CSV, 3);
+            Assertions.assertTrue(replayed.lookup(journalsymbol, 20240101L).isEmpty());
+            Assertions.assertEquals(160, replayed.lookup(journalsymbol, 20240102L).orElseThrow().getOffset());
+
+            // exceeding the journal limit checkpoints the full index and drops the journal
+            index.get(journalsymbol).put(20240103L, new IndexNode(20240103L, 320, 10));
+            index.get(journalsymbol).setDirty(20240103L);
+            index.persist(journalsymbol);
+
+            Assertions.assertTrue(Files.exists(Paths.get(indexpath)));
+            Assertions.assertFalse(Files.exists(Paths.get(journalpath)));
+            Assertions.assertEquals(2, Files.readAllLines(Paths.get(indexpath)).size());
+        } finally {
+            Files.deleteIfExists(Paths.get(indexpath));
+            Files.deleteIfExists(Paths.get(journalpath));
+        }
+    }
+
+    @Test
+    public void TestSymbolIndex_mappedReads() throws IOException {
+        String mappedsymbol = "TSTMAP";
+        DataAdapter<PriceBar> adapter = new SimpleDataAdapter();
+        SymbolIndex<PriceBar> index = new SymbolIndex<>(adapter, IndexFormat.BINARY, 3);
+        String indexpath = index.getIndexFilePath(mappedsymbol);
+        String journalpath = index.getJournalFilePath(mappedsymbol);
+
+        try {
+            index.reset(mappedsymbol, new DateIndex());
+            index.get(mappedsymbol).put(20240101L, new IndexNode(20240101L, 0, 10));
+            index.get(mappedsymbol).setDirty();
+            index.persist(mappedsymbol);
+            index.get(mappedsymbol).put(20240102L, new IndexNode(20240102L, 160, 10));
+            index.get(mappedsymbol).setDirty(20240102L);
+            index.persist(mappedsymbol);
+            Assertions.assertTrue(Files.exists(Paths.get(journalpath)));
+
+            // lookups on an unloaded symbol read the mapped file and its journal without loading it
+            SymbolIndex<PriceBar> reader = new SymbolIndex<>(adapter, IndexFormat.BINARY, 3);
+            Assertions.assertEquals(20240101L, reader.first(mappedsymbol).orElseThrow().getDate());
+            Assertions.assertEquals(160, reader.lookup(mappedsymbol, 20240102L).orElseThrow().getOffset());
+            Assertions.assertEquals(20240102L, reader.next(mappedsymbol, 20240101L).orElseThrow().getDate());
+            Assertions.assertFalse(reader.containsKey(mappedsymbol));
+
+            // a write loads the symbol, whose changes are seen once it is evicted again
+            reader.load(mappedsymbol);
+            reader.get(mappedsymbol).put(20240103L, new IndexNode(20240103L, 320, 10));
+            reader.get(mappedsymbol).setDirty(20240103L);
+            Assertions.assertEquals(20240103L, reader.last(mappedsymbol).orElseThrow().getDate());
+            Assertions.assertTrue(reader.evict(mappedsymbol));
+            Assertions.assertEquals(320, reader.lookup(mappedsymbol, 20240103L).orElseThrow().getOffset());
+            Assertions.assertFalse(reader.containsKey(mappedsymbol));
+        } finally {
+            Files.deleteIfExists(Paths.get(indexpath));
+            Files.deleteIfExists(Paths.get(journalpath));
+        }
+    }
+
+    @Test
+    public void TestSymbolIndex_interruptedCheckpoint() throws IOException {
+        String journalsymbol = "TSTCKP";
+        DataAdapter<PriceBar> adapter = new SimpleDataAdapter();
+        SymbolIndex<PriceBar> index = new SymbolIndex<>(adapter, IndexFormat.CSV, 3);
+        String indexpath = index.getIndexFilePath(journalsymbol);
+        String journalpath = index.getJournalFilePath(journalsymbol);
+        String checkpointpath = index.getCheckpointFilePath(journalsymbol);
+
+        try {
+            // a crash after the checkpoint was complete but before the journal was dropped
+            Files.writeString(Paths.get(indexpath), String.format("20240101,0,10%n"));
+            Files.writeString(Paths.get(journalpath), String.format("20240101,0,5%n20240102,80,10%n"));
+            Files.writeString(Paths.get(checkpointpath), String.format("20240101,0,10%n20240102,160,10%n"));
+
+            Assertions.assertEquals(10, index.lookup(journalsymbol, 20240101L).orElseThrow().getCount());
+            Assertions.assertEquals(160, index.lookup(journalsymbol, 20240102L).orElseThrow().getOffset());
+            Assertions.assertFalse(Files.exists(Paths.get(journalpath)));
+            Assertions.assertFalse(Files.exists(Paths.get(checkpointpath)));
+            Assertions.assertEquals(2, Files.readAllLines(Paths.get(indexpath)).size());
+        } finally {
+            Files.deleteIfExists(Paths.get(indexpath));
+            Files.deleteIfExists(Paths.get(journalpath));
+            Files.deleteIfExists(Paths.get(checkpointpath));
+        }
+    }
+
+    @Test
+    public void TestSymbolIndex_tornJournal() throws IOException {
+        String journalsymbol = "TSTTRN";
+        DataAdapter<PriceBar> adapter = new SimpleDataAdapter();
+        SymbolIndex<PriceBar> index = new SymbolIndex<>(adapter, IndexFormat.CSV, 3);
+        String indexpath = index.getIndexFilePath(journalsymbol);
+        String journalpath = index.getJournalFilePath(journalsymbol);
+
+        try {
+            Files.writeString(Paths.get(journalpath), "20240101,0,10\n20240102,160,10\n2024010");
+
+            Assertions.assertEquals(160, index.lookup(journalsymbol, 20240102L).orElseThrow().getOffset());
+            Assertions.assertEquals(2, index.get(journalsymbol).size());
+        } finally {
+            Files.deleteIfExists(Paths.get(indexpath));
+            Files.deleteIfExists(Paths.get(journalpath));
+        }
+    }
+
+    @Test
+    public void TestSymbolIndex_eviction() throws IOException {
+        String dirtysymbol = "TSTEVC";
+        DataAdapter<PriceBar> adapter = new SimpleDataAdapter();
+        SymbolIndex<PriceBar> index = new SymbolIndex<>(adapter, IndexFormat.CSV, 0, 2, s -> null);
+        String indexpath = index.getIndexFilePath(dirtysymbol);
+
+        try {
+            index.load(dirtysymbol);
+            index.get(dirtysymbol).put(20240101L, new IndexNode(20240101L, 0, 10));
+            index.get(dirtysymbol).setDirty();
+
+            index.load(symbol);
+            Assertions.assertEquals(2, index.size());
+
+            // the least recently used index is persisted before it is unloaded
+            index.load("BOGUS");
+            Assertions.assertEquals(2, index.size());
+            Assertions.assertFalse(index.containsKey(dirtysymbol));
+            Assertions.assertTrue(Files.exists(Paths.get(indexpath)));
+            Assertions.assertEquals(10, index.lookup(dirtysymbol, 20240101L).orElseThrow().getCount());
+
+            // reloading evicted the symbol that was used least recently after it
+            Assertions.assertFalse(index.containsKey(symbol));
+            Assertions.assertTrue(index.containsKey("BOGUS"));
+        } finally {
+            Files.deleteIfExists(Paths.get(indexpath));
+        }
+    }
+
 }
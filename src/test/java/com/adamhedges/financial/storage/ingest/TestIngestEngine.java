@@ -0,0 +1,83 @@
+package com.adamhedges.financial.storage.ingest;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.financial.storage.FileStore;
+import com.adamhedges.financial.storage.SimpleDataAdapter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class TestIngestEngine {
+
+    private static final String[] symbols = { "TSTIG1", "TSTIG2", "TSTIG3" };
+    private static final String badSymbol = "missing/TSTIG4";
+
+    private final FileStore<PriceBar> filestore = new FileStore<>(new SimpleDataAdapter());
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (String symbol : symbols) {
+            Files.deleteIfExists(Paths.get(filestore.adapter.getDataFilePath(symbol)));
+            Files.deleteIfExists(Paths.get(filestore.adapter.getIndexFilePath(symbol)));
+        }
+    }
+
+    private List<PriceBar> getBars(String symbol, long date, int n) {
+        List<PriceBar> bars = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            bars.add(new PriceBar(symbol, date, 930 + i));
+        }
+        return bars;
+    }
+
+    @Test
+    public void TestIngestEngine_ingestDate() throws InterruptedException {
+        long date = 20240102L;
+        Map<String, List<PriceBar>> items = new HashMap<>();
+        for (String symbol : symbols) {
+            items.put(symbol, getBars(symbol, date, 5));
+        }
+        items.put(badSymbol, getBars(badSymbol, date, 5));
+
+        IngestResult result;
+        try (IngestEngine<PriceBar> engine = new IngestEngine<>(filestore, 2)) {
+            result = engine.ingest(date, items);
+        }
+
+        Assertions.assertFalse(result.isSuccess());
+        Assertions.assertTrue(result.getFailures().containsKey(badSymbol));
+        for (String symbol : symbols) {
+            Assertions.assertEquals(5, result.getWritten().get(symbol));
+            Assertions.assertEquals(5, filestore.read(symbol, date).size());
+        }
+    }
+
+    @Test
+    public void TestIngestEngine_ingestStream() throws InterruptedException {
+        Stream<IngestBlock<PriceBar>> blocks = Stream.of(
+                new IngestBlock<>(symbols[0], 20240103L, getBars(symbols[0], 20240103L, 3)),
+                new IngestBlock<>(symbols[0], 20240102L, getBars(symbols[0], 20240102L, 4)),
+                new IngestBlock<>(symbols[1], 20240102L, getBars(symbols[1], 20240102L, 2))
+        );
+
+        IngestResult result;
+        try (IngestEngine<PriceBar> engine = new IngestEngine<>(filestore, 2)) {
+            result = engine.ingest(blocks);
+        }
+
+        Assertions.assertTrue(result.isSuccess());
+        Assertions.assertEquals(7, result.getWritten().get(symbols[0]));
+        Assertions.assertEquals(7, filestore.read(symbols[0], 20240102L, 20240103L).size());
+        Assertions.assertEquals(2, filestore.read(symbols[1], 20240102L).size());
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.adamhedges.financial.storage.ingest;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.financial.storage.FileStore;
+import com.adamhedges.financial.storage.SimpleDataAdapter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+public class TestWriteBehindQueue {
+
+    private static final String symbol = "TSTWBQ";
+    private static final String badSymbol = "missing/TSTWBQ";
+
+    private final FileStore<PriceBar> filestore = new FileStore<>(new SimpleDataAdapter());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        released.countDown();
+        executor.shutdown();
+        Files.deleteIfExists(Paths.get(filestore.adapter.getDataFilePath(symbol)));
+        Files.deleteIfExists(Paths.get(filestore.adapter.getIndexFilePath(symbol)));
+    }
+
+    private List<PriceBar> getBars(String symbol, long date, int n) {
+        List<PriceBar> bars = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            bars.add(new PriceBar(symbol, date, 930 + i));
+        }
+        return bars;
+    }
+
+    // holds the only executor thread so that writes stay queued until released
+    private void stall() {
+        executor.execute(() -> {
+            try {
+                released.await();
+            } catch (InterruptedException ignored) { }
+        });
+    }
+
+    @Test
+    public void TestWriteBehindQueue_mergesQueuedDays() {
+        stall();
+        try (WriteBehindQueue<PriceBar> queue = new WriteBehindQueue<>(filestore, executor, 10)) {
+            CompletableFuture<Void> first = queue.write(symbol, 20240102L, getBars(symbol, 20240102L, 5));
+            CompletableFuture<Void> second = queue.write(symbol, 20240102L, getBars(symbol, 20240102L, 3));
+            queue.write(symbol, 20240103L, getBars(symbol, 20240103L, 4));
+            Assertions.assertSame(first, second);
+            Assertions.assertEquals(2, queue.getPendingDays());
+            Assertions.assertEquals(1, queue.getMergedWrites());
+
+            released.countDown();
+            queue.flush().join();
+
+            Assertions.assertTrue(first.isDone() && !first.isCompletedExceptionally());
+            Assertions.assertEquals(0, queue.getPendingDays());
+            Assertions.assertEquals(1, queue.getFlushedBatches());
+        }
+
+        Assertions.assertEquals(3, filestore.read(symbol, 20240102L).size());
+        Assertions.assertEquals(4, filestore.read(symbol, 20240103L).size());
+    }
+
+    @Test
+    public void TestWriteBehindQueue_rejectsWhenFull() {
+        stall();
+        try (WriteBehindQueue<PriceBar> queue = new WriteBehindQueue<>(filestore, executor, 2)) {
+            queue.write(symbol, 20240102L, getBars(symbol, 20240102L, 5));
+            queue.write(symbol, 20240103L, getBars(symbol, 20240103L, 5));
+            CompletableFuture<Void> rejected = queue.write(symbol, 20240104L, getBars(symbol, 20240104L, 5));
+            CompletableFuture<Void> merged = queue.write(symbol, 20240103L, getBars(symbol, 20240103L, 2));
+
+            ExecutionException ex = Assertions.assertThrows(ExecutionException.class, rejected::get);
+            Assertions.assertInstanceOf(RejectedExecutionException.class, ex.getCause());
+            Assertions.assertEquals(1, queue.getRejectedWrites());
+            Assertions.assertFalse(merged.isDone());
+
+            released.countDown();
+            merged.join();
+        }
+
+        Assertions.assertEquals(2, filestore.read(symbol, 20240103L).size());
+    }
+
+    @Test
+    public void TestWriteBehindQueue_failedWrite() {
+        released.countDown();
+        try (WriteBehindQueue<PriceBar> queue = new WriteBehindQueue<>(filestore, executor, 10)) {
+            CompletableFuture<Void> failed = queue.write(badSymbol, 20240102L, getBars(badSymbol, 20240102L, 5));
+            Assertions.assertThrows(ExecutionException.class, failed::get);
+            Assertions.assertEquals(0, queue.getPendingDays());
+        }
+    }
+
+    @Test
+    public void TestWriteBehindQueue_refusedByExecutor() {
+        ExecutorService stopped = Executors.newSingleThreadExecutor();
+        stopped.shutdown();
+        try (WriteBehindQueue<PriceBar> queue = new WriteBehindQueue<>(filestore, stopped, 1)) {
+            // a refused drain gives back its capacity, so the queue is neither full nor stuck as scheduled afterwards
+            for (int i = 0; i < 2; i++) {
+                CompletableFuture<Void> refused = queue.write(symbol, 20240102L + i, getBars(symbol, 20240102L + i, 5));
+                ExecutionException ex = Assertions.assertThrows(ExecutionException.class, refused::get);
+                Assertions.assertInstanceOf(RejectedExecutionException.class, ex.getCause());
+                Assertions.assertEquals(0, queue.getPendingDays());
+            }
+            Assertions.assertEquals(2, queue.getRejectedWrites());
+            Assertions.assertTrue(queue.flush().isDone());
+        }
+    }
+
+}
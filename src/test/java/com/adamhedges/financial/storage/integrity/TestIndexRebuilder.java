@@ -0,0 +1,98 @@
+package com.adamhedges.financial.storage.integrity;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.financial.storage.FileStore;
+import com.adamhedges.financial.storage.FileStoreOptions;
+import com.adamhedges.financial.storage.SimpleDataAdapter;
+import com.adamhedges.financial.storage.index.IndexNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class TestIndexRebuilder {
+
+    private static final String lost = "TSTRBA";
+    private static final String damaged = "TSTRBB";
+
+    private final FileStore<PriceBar> filestore = new FileStore<>(new SimpleDataAdapter(), new FileStoreOptions());
+
+    private static List<PriceBar> getBars(String symbol, long date, int n) {
+        List<PriceBar> bars = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            PriceBar bar = new PriceBar(symbol, date, 930 + i);
+            bar.setOpen(10.0 + i);
+            bars.add(bar);
+        }
+        return bars;
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (String symbol : List.of(lost, damaged)) {
+            Files.deleteIfExists(Paths.get(filestore.adapter.getDataFilePath(symbol)));
+            Files.deleteIfExists(Paths.get(filestore.index.getIndexFilePath(symbol)));
+        }
+    }
+
+    @Test
+    public void TestIndexRebuilder_rebuild() throws IOException, InterruptedException {
+        for (String symbol : List.of(lost, damaged)) {
+            filestore.writeBatch(symbol, Map.of(20220103L, getBars(symbol, 20220103L, 10), 20220104L, getBars(symbol, 20220104L, 5), 20220105L, getBars(symbol, 20220105L, 7)));
+        }
+
+        Files.delete(Paths.get(filestore.index.getIndexFilePath(lost)));
+        Files.writeString(Paths.get(filestore.index.getIndexFilePath(damaged)), "20220103,0,2\n");
+
+        FileStore<PriceBar> recovered = new FileStore<>(new SimpleDataAdapter(), new FileStoreOptions());
+        try (IndexRebuilder<PriceBar> rebuilder = new IndexRebuilder<>(recovered, 2)) {
+            IndexRebuildResult result = rebuilder.rebuild(List.of(lost, damaged));
+            Assertions.assertTrue(result.isSuccess());
+            Assertions.assertEquals(3, result.getRebuilt().get(lost));
+            Assertions.assertEquals(3, result.getRebuilt().get(damaged));
+        }
+
+        // the rebuilt index is persisted, so a fresh store reads every day back
+        FileStore<PriceBar> reloaded = new FileStore<>(new SimpleDataAdapter(), new FileStoreOptions());
+        for (String symbol : List.of(lost, damaged)) {
+            Assertions.assertEquals(22, reloaded.read(symbol, 20220103L, 20220131L).size());
+            Assertions.assertEquals(new IndexNode(20220104L, 16 * 10, 5), reloaded.index.lookup(symbol, 20220104L).orElseThrow());
+            Assertions.assertTrue(reloaded.verifyIntegrity(symbol).isEmpty());
+        }
+    }
+
+    @Test
+    public void TestIndexRebuilder_dottedSymbols() throws IOException {
+        String dotted = "TSTRB.B";
+        Path compacting = Paths.get(String.format("%s.%s", filestore.adapter.getDataFilePath(lost), FileStore.COMPACT_EXTENSION));
+        try {
+            filestore.write(dotted, 20220103L, getBars(dotted, 20220103L, 3));
+            Files.write(compacting, new byte[16]);
+
+            List<String> symbols = DataFiles.symbols(filestore.adapter);
+            Assertions.assertTrue(symbols.contains(dotted));
+            Assertions.assertTrue(symbols.stream().noneMatch(symbol -> symbol.endsWith(FileStore.COMPACT_EXTENSION)));
+        } finally {
+            Files.deleteIfExists(Paths.get(filestore.adapter.getDataFilePath(dotted)));
+            Files.deleteIfExists(Paths.get(filestore.index.getIndexFilePath(dotted)));
+            Files.deleteIfExists(compacting);
+        }
+    }
+
+    @Test
+    public void TestIndexRebuilder_requiresInPlaceRows() throws IOException {
+        FileStoreOptions options = new FileStoreOptions();
+        options.setAppendOnly(true);
+        FileStore<PriceBar> appendOnly = new FileStore<>(new SimpleDataAdapter(), options);
+        appendOnly.write(lost, 20220103L, getBars(lost, 20220103L, 3));
+        Assertions.assertThrows(IOException.class, () -> appendOnly.rebuildIndex(lost));
+    }
+
+}
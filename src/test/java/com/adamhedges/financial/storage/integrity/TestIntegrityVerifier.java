@@ -0,0 +1,89 @@
+package com.adamhedges.financial.storage.integrity;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.financial.storage.FileStore;
+import com.adamhedges.financial.storage.FileStoreOptions;
+import com.adamhedges.financial.storage.SimpleDataAdapter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class TestIntegrityVerifier {
+
+    private static final String clean = "TSTVRA";
+    private static final String corrupt = "TSTVRB";
+
+    private final FileStore<PriceBar> filestore = new FileStore<>(new SimpleDataAdapter(), new FileStoreOptions());
+
+    private static List<PriceBar> getBars(String symbol, long date, int n) {
+        List<PriceBar> bars = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            PriceBar bar = new PriceBar(symbol, date, 930 + i);
+            bar.setOpen(10.0 + i);
+            bars.add(bar);
+        }
+        return bars;
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (String symbol : List.of(clean, corrupt)) {
+            Files.deleteIfExists(Paths.get(filestore.adapter.getDataFilePath(symbol)));
+            Files.deleteIfExists(Paths.get(filestore.index.getIndexFilePath(symbol)));
+        }
+    }
+
+    @Test
+    public void TestIntegrityVerifier_collectsEveryIssue() throws IOException, InterruptedException {
+        for (String symbol : List.of(clean, corrupt)) {
+            filestore.writeBatch(symbol, Map.of(20220103L, getBars(symbol, 20220103L, 10), 20220104L, getBars(symbol, 20220104L, 10)));
+        }
+
+        // an id from another day inside the second block, then trailing bytes that no index node owns
+        try (RandomAccessFile file = new RandomAccessFile(filestore.adapter.getDataFilePath(corrupt), "rw")) {
+            file.seek(16 * 10);
+            file.writeLong(Long.reverseBytes(new PriceBar(corrupt, 20220103L, 930).getId()));
+            file.seek(file.length());
+            file.write(new byte[24]);
+        }
+
+        try (IntegrityVerifier<PriceBar> verifier = new IntegrityVerifier<>(filestore, 2)) {
+            IntegrityReport report = verifier.verify(List.of(clean, corrupt));
+
+            Assertions.assertFalse(report.isClean());
+            Assertions.assertTrue(report.getFailures().isEmpty());
+            Assertions.assertTrue(report.getIssues().get(clean).isEmpty());
+
+            Map<IntegrityIssue.Type, IntegrityIssue> issues = report.getIssues().get(corrupt).stream()
+                    .collect(Collectors.toMap(IntegrityIssue::getType, issue -> issue));
+            Assertions.assertEquals(3, issues.size());
+            Assertions.assertEquals(20220104L, issues.get(IntegrityIssue.Type.NON_INCREASING_ID).getDate());
+            Assertions.assertEquals(1, issues.get(IntegrityIssue.Type.DATE_MISMATCH).getRecords());
+            Assertions.assertEquals(16 * 20, issues.get(IntegrityIssue.Type.ORPHANED_BYTES).getOffset());
+            Assertions.assertEquals(24, issues.get(IntegrityIssue.Type.ORPHANED_BYTES).getBytes());
+
+            Assertions.assertEquals(2, verifier.getSymbolsChecked());
+            Assertions.assertEquals(2, verifier.getSymbolsTotal());
+            Assertions.assertEquals(16 * 40, report.getBytesScanned());
+        }
+    }
+
+    @Test
+    public void TestIntegrityVerifier_missingDataFile() throws InterruptedException {
+        try (IntegrityVerifier<PriceBar> verifier = new IntegrityVerifier<>(filestore, 1)) {
+            IntegrityReport report = verifier.verify(List.of(clean));
+            Assertions.assertFalse(report.isClean());
+            Assertions.assertTrue(report.getFailures().containsKey(clean));
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.adamhedges.financial.storage.io;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+public class TestFileChannelPool {
+
+    @Test
+    public void TestFileChannelPool_reuseAndEviction() throws IOException {
+        Path first = Files.createTempFile("pooled", ".dat");
+        Path second = Files.createTempFile("pooled", ".dat");
+        Path replacement = Files.createTempFile("pooled", ".dat");
+        try (FileChannelPool pool = new FileChannelPool(1)) {
+            Files.write(first, new byte[] { 1, 2, 3, 4 });
+            Files.write(second, new byte[] { 5, 6 });
+            Files.write(replacement, new byte[] { 7 });
+
+            FileChannel channel;
+            try (FileChannelPool.Handle handle = pool.acquire(first)) {
+                channel = handle.getChannel();
+            }
+            try (FileChannelPool.Handle handle = pool.acquire(first)) {
+                Assertions.assertSame(channel, handle.getChannel());
+            }
+
+            // an evicted channel stays open until its lease is returned
+            FileChannelPool.Handle leased = pool.acquire(first);
+            try (FileChannelPool.Handle handle = pool.acquire(second)) {
+                Assertions.assertEquals(1, pool.size());
+                Assertions.assertEquals(2, handle.getChannel().size());
+            }
+            Assertions.assertTrue(leased.getChannel().isOpen());
+            leased.close();
+            Assertions.assertFalse(channel.isOpen());
+
+            // a replaced file is reopened
+            Files.move(replacement, second, StandardCopyOption.REPLACE_EXISTING);
+            try (FileChannelPool.Handle handle = pool.acquire(second)) {
+                ByteBuffer data = ByteBuffer.allocate(1);
+                handle.getChannel().read(data, 0);
+                Assertions.assertEquals(7, data.get(0));
+            }
+        } finally {
+            Files.deleteIfExists(first);
+            Files.deleteIfExists(second);
+            Files.deleteIfExists(replacement);
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.adamhedges.financial.storage.io;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TestMappedDataFile {
+
+    @Test
+    public void TestMappedDataFile_remapOnGrowth() throws IOException {
+        Path path = Files.createTempFile("mapped", ".dat");
+        try {
+            Files.write(path, new byte[] { 1, 2, 3, 4 });
+            MappedDataFile file = new MappedDataFile(path.toString());
+
+            ByteBuffer data = file.map().orElseThrow();
+            Assertions.assertEquals(4, data.limit());
+            Assertions.assertEquals(3, data.get(2));
+
+            Files.write(path, new byte[] { 1, 2, 3, 4, 5, 6 });
+            data = file.map().orElseThrow();
+            Assertions.assertEquals(6, data.limit());
+            Assertions.assertEquals(6, data.get(5));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.adamhedges.financial.storage.layout;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Random;
+
+public class TestBlockLayout {
+
+    private final List<ColumnType> columns = List.of(ColumnType.LONG, ColumnType.INT);
+
+    @Test
+    public void TestBlockLayout_columnarRoundTrip() {
+        int count = 3;
+        ByteBuffer rows = ByteBuffer.allocate(12 * count).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < count; i++) {
+            rows.putLong(100 + i);
+            rows.putInt(i);
+        }
+        rows.flip();
+
+        ByteBuffer columnar = ByteBuffer.allocate(12 * count).order(ByteOrder.LITTLE_ENDIAN);
+        BlockLayout.COLUMNAR.fromRows(rows, count, columns, columnar);
+        Assertions.assertEquals(12 * count, columnar.position());
+
+        // longs first, then ints
+        for (int i = 0; i < count; i++) {
+            Assertions.assertEquals(100 + i, columnar.getLong(i * 8));
+            Assertions.assertEquals(i, columnar.getInt(count * 8 + i * 4));
+        }
+
+        columnar.flip();
+        ByteBuffer output = ByteBuffer.allocate(12 * count).order(ByteOrder.LITTLE_ENDIAN);
+        BlockLayout.COLUMNAR.toRows(columnar, count, columns, output);
+        Assertions.assertEquals(rows.rewind(), output.flip());
+    }
+
+    @Test
+    public void TestBlockLayout_compressedRoundTrip() {
+        List<ColumnType> types = List.of(ColumnType.LONG, ColumnType.DOUBLE, ColumnType.INT, ColumnType.FLOAT);
+        Random random = new Random(42);
+
+        // smooth columns are encoded, noisy ones fall back to raw rows
+        for (boolean noisy : new boolean[] { false, true }) {
+            int count = 500;
+            ByteBuffer rows = ByteBuffer.allocate(24 * count).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < count; i++) {
+                rows.putLong(noisy ? random.nextLong() : 202201030930L + i * 60 + (i % 7 == 0 ? 3 : 0));
+                rows.putDouble(noisy ? random.nextDouble() : 100.0 + (i / 5) * 0.01);
+                rows.putInt(noisy ? random.nextInt() : -i);
+                rows.putFloat(noisy ? random.nextFloat() : 1.5f);
+            }
+            rows.flip();
+
+            ByteBuffer compressed = ByteBuffer.allocate(BlockLayout.COMPRESSED.maxStoredBytes(24 * count)).order(ByteOrder.LITTLE_ENDIAN);
+            BlockLayout.COMPRESSED.fromRows(rows, count, types, compressed);
+            Assertions.assertEquals(compressed.position(), BlockLayout.COMPRESSED.storedBytes(compressed.duplicate().order(ByteOrder.LITTLE_ENDIAN).flip(), 24 * count));
+            if (!noisy) {
+                Assertions.assertTrue(compressed.position() < 24 * count / 4);
+            }
+
+            compressed.flip();
+            ByteBuffer output = ByteBuffer.allocate(24 * count).order(ByteOrder.LITTLE_ENDIAN);
+            BlockLayout.COMPRESSED.toRows(compressed, count, types, output);
+            Assertions.assertFalse(compressed.hasRemaining());
+            Assertions.assertEquals(rows.rewind(), output.flip());
+        }
+    }
+
+    @Test
+    public void TestBlockLayout_columnOffset() {
+        Assertions.assertEquals(0, ColumnType.offsetOf(columns, 0));
+        Assertions.assertEquals(8, ColumnType.offsetOf(columns, 1));
+        Assertions.assertEquals(12, ColumnType.offsetOf(columns, 2));
+    }
+
+}
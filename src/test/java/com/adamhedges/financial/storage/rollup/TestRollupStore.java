@@ -0,0 +1,148 @@
+package com.adamhedges.financial.storage.rollup;
+
+import com.adamhedges.financial.core.bars.PriceBar;
+import com.adamhedges.financial.storage.FileStore;
+import com.adamhedges.financial.storage.FileStoreOptions;
+import com.adamhedges.financial.storage.SimpleDataAdapter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+public class TestRollupStore {
+
+    private static final String symbol = "TSTRLP";
+
+    private final FileStore<PriceBar> filestore = new FileStore<>(new SimpleDataAdapter(), getOptions());
+
+    private static FileStoreOptions getOptions() {
+        FileStoreOptions options = new FileStoreOptions();
+        options.setDailyRollup(true);
+        return options;
+    }
+
+    private static List<PriceBar> getBars(long date, int n, double basis) {
+        List<PriceBar> bars = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            PriceBar bar = new PriceBar(symbol, date, 930 + i);
+            bar.setOpen(basis + i);
+            bar.setHigh(basis + i + 1);
+            bar.setLow(basis + i - 1);
+            bar.setClose(basis + i + 0.5);
+            bar.setVolume(100);
+            bars.add(bar);
+        }
+        return bars;
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Paths.get(filestore.adapter.getDataFilePath(symbol)));
+        Files.deleteIfExists(Paths.get(filestore.index.getIndexFilePath(symbol)));
+        Files.deleteIfExists(Paths.get(filestore.adapter.getIndexFilePath(symbol, RollupStore.EXTENSION)));
+    }
+
+    @Test
+    public void TestRollupStore_maintainedOnWrite() throws IOException {
+        filestore.write(symbol, 20220103L, getBars(20220103L, 10, 10.0));
+        filestore.writeBatch(symbol, Map.of(20220104L, getBars(20220104L, 5, 20.0), 20220105L, getBars(20220105L, 5, 30.0)));
+
+        // summaries are of the stored bars, and the test adapter only stores ids and opens
+        List<DailySummary> days = filestore.readRollup(symbol, 20220101L, 20220131L);
+        Assertions.assertEquals(3, days.size());
+        DailySummary first = days.get(0);
+        Assertions.assertEquals(20220103L, first.getDate());
+        Assertions.assertEquals(10, first.getCount());
+        Assertions.assertEquals(10.0, first.getOpen());
+        Assertions.assertEquals(getBars(20220103L, 10, 10.0).get(0).getId(), first.getFirstId());
+        Assertions.assertEquals(getBars(20220103L, 10, 10.0).get(9).getId(), first.getLastId());
+        Assertions.assertEquals(0, first.getVolume());
+
+        // rewriting a day replaces its summary, and the rollup survives a reload from disk
+        filestore.write(symbol, 20220104L, getBars(20220104L, 2, 50.0));
+        FileStore<PriceBar> reloaded = new FileStore<>(new SimpleDataAdapter(), getOptions());
+        days = reloaded.readRollup(symbol, 20220104L, 20220104L);
+        Assertions.assertEquals(1, days.size());
+        Assertions.assertEquals(2, days.get(0).getCount());
+        Assertions.assertEquals(50.0, days.get(0).getOpen());
+
+        DailySummary week = DailySummary.combine(reloaded.readRollup(symbol, 20220103L, 20220107L)).orElseThrow();
+        Assertions.assertEquals(17, week.getCount());
+        Assertions.assertEquals(10.0, week.getOpen());
+        Assertions.assertEquals(getBars(20220105L, 5, 30.0).get(4).getId(), week.getLastId());
+
+        // callers get copies
+        days.get(0).setCount(99);
+        Assertions.assertEquals(2, reloaded.readRollup(symbol, 20220104L, 20220104L).get(0).getCount());
+    }
+
+    @Test
+    public void TestRollupStore_combine() {
+        DailySummary monday = new DailySummary(20220103L, 10, 1, 10, 10.0, 20.0, 9.0, 19.5, 1000);
+        DailySummary tuesday = new DailySummary(20220104L, 2, 11, 12, 50.0, 52.0, 49.0, 51.5, 200);
+
+        DailySummary week = DailySummary.combine(List.of(monday, tuesday)).orElseThrow();
+        Assertions.assertEquals(new DailySummary(20220103L, 12, 1, 12, 10.0, 52.0, 9.0, 51.5, 1200), week);
+        Assertions.assertTrue(DailySummary.combine(List.of()).isEmpty());
+    }
+
+    @Test
+    public void TestRollupStore_rebuild() throws IOException {
+        FileStore<PriceBar> plain = new FileStore<>(new SimpleDataAdapter());
+        plain.write(symbol, 20220103L, getBars(20220103L, 10, 10.0));
+        plain.write(symbol, 20220104L, getBars(20220104L, 10, 20.0));
+        Assertions.assertTrue(filestore.readRollup(symbol, 20220103L, 20220104L).isEmpty());
+
+        filestore.rebuildRollup(symbol);
+        List<DailySummary> days = filestore.readRollup(symbol, 20220103L, 20220104L);
+        Assertions.assertEquals(2, days.size());
+        Assertions.assertEquals(10, days.get(1).getCount());
+        Assertions.assertEquals(20.0, days.get(1).getOpen());
+        Assertions.assertEquals(getBars(20220104L, 10, 20.0).get(9).getId(), days.get(1).getLastId());
+
+        // summaries kept on write, including appends, match those rebuilt from the data file
+        filestore.writeBatch(symbol, Map.of(20220104L, getBars(20220104L, 8, 20.0)));
+        filestore.append(symbol, 20220104L, new ArrayList<>(getBars(20220104L, 10, 20.0).subList(8, 10)));
+        Assertions.assertEquals(days, filestore.readRollup(symbol, 20220103L, 20220104L));
+        filestore.rebuildRollup(symbol);
+        Assertions.assertEquals(days, filestore.readRollup(symbol, 20220103L, 20220104L));
+    }
+
+    @Test
+    public void TestRollupStore_patchedInPlace() throws IOException {
+        RollupStore<PriceBar> rollups = new RollupStore<>(new SimpleDataAdapter(), 1);
+        Path path = Paths.get(rollups.getRollupFilePath(symbol));
+        DailySummary monday = new DailySummary(20220103L, 10, 1, 10, 10.0, 20.0, 9.0, 19.5, 1000);
+        DailySummary wednesday = new DailySummary(20220105L, 2, 11, 12, 50.0, 52.0, 49.0, 51.5, 200);
+        rollups.update(symbol, new TreeMap<>(Map.of(20220103L, Optional.of(monday), 20220105L, Optional.of(wednesday))));
+        Assertions.assertEquals(2 * DailySummary.BINARY_SIZE_BYTES, Files.size(path));
+
+        // replacing the last day patches its entry and a later day is appended, leaving the file in place
+        Object fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        wednesday.setCount(3);
+        DailySummary thursday = new DailySummary(20220106L, 1, 13, 13, 52.0, 52.0, 52.0, 52.0, 100);
+        rollups.update(symbol, new TreeMap<>(Map.of(20220105L, Optional.of(wednesday), 20220106L, Optional.of(thursday))));
+        Assertions.assertEquals(fileKey, Files.readAttributes(path, BasicFileAttributes.class).fileKey());
+
+        // an inserted day moves the later entries; removing a day rewrites the file without it
+        DailySummary tuesday = new DailySummary(20220104L, 1, 11, 11, 40.0, 40.0, 40.0, 40.0, 100);
+        rollups.update(symbol, new TreeMap<>(Map.of(20220104L, Optional.of(tuesday), 20220106L, Optional.empty())));
+
+        // only one symbol stays resident, so the first is read back from its file
+        rollups.load("TSTRLP2");
+        Assertions.assertFalse(rollups.containsKey(symbol));
+        Assertions.assertEquals(List.of(monday, tuesday, wednesday), rollups.read(symbol, 20220101L, 20220131L));
+        Assertions.assertEquals(3 * DailySummary.BINARY_SIZE_BYTES, Files.size(path));
+    }
+
+}